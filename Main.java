@@ -1,5 +1,9 @@
 import network.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -29,6 +33,11 @@ public class Main {
    /** Acceptable percentage correct for learning termination. */
    private static final double kAcceptablePercentCorrect = 95;
 
+   /** Maximum number of requests per batch when serving. */
+   private static final int kServeBatchSize = 32;
+   /** Maximum time a request waits for a batch when serving (us). */
+   private static final long kServeWaitMicros = 500;
+
    /**
     * Main driver.
     */
@@ -47,16 +56,66 @@ public class Main {
       /* LEARNING */
       //////////////
 
-      // Create the network.
-      int[] layerSizes = new int[] {2, 3, 3, 1};
-      Network network = new Network(layerSizes);
+      // Optional serve mode ("serve <port> [model]").
+      // The model is served over a local socket instead of interactively.
+      boolean serve = args.length > 1 && args[0].equals("serve");
+      int modelArg = serve ? 2 : 0;
+
+      // Optional model file.
+      // If it exists, the model is mapped instead of trained.
+      // Otherwise, the trained network is saved to it.
+      Path modelPath = (args.length > modelArg)
+         ? Paths.get(args[modelArg])
+         : null;
+      Model network;
+      Network trained = null;
+
+      if (modelPath != null && Files.exists(modelPath)) {
+         try {
+            // Served models are loaded onto the heap so they can be
+            //   published as snapshots.
+            if (serve) {
+               trained = Network.load(modelPath);
+               network = trained;
+            } else {
+               network = ModelFile.map(modelPath);
+            }
+            System.out.println("Loaded model from " + modelPath);
+         } catch (IOException e) {
+            System.out.println("Failed to load model: " + e.getMessage());
+            return;
+         }
+      } else {
+         // Create the network.
+         int[] layerSizes = new int[] {2, 3, 3, 1};
+         trained = new Network(layerSizes);
+
+         Trainer trainer = new Trainer();
+         for (TestCase test : tests) {
+            trainer.addTest(test);
+         }
+
+         trainer.setValidation(new ListDataset(validation));
+         trainer.addListener(new ConsoleListener());
+         trainer.addListener(new JfrListener());
+
+         trainer.train(trained);
+         network = trained;
 
-      Trainer trainer = new Trainer();
-      for (TestCase test : tests) {
-         trainer.addTest(test);
+         if (modelPath != null) {
+            try {
+               trained.save(modelPath);
+               System.out.println("Saved model to " + modelPath);
+            } catch (IOException e) {
+               System.out.println("Failed to save model: " + e.getMessage());
+            }
+         }
       }
 
-      trainer.train(network);
+      if (serve) {
+         serve(trained, Integer.parseInt(args[1]));
+         return;
+      }
 
       /////////////////
       /* INTERACTION */
@@ -122,6 +181,33 @@ public class Main {
       }
    }
 
+   /**
+    * Serves a network over a local socket until "quit" is entered.
+    * Entering "stats" prints the server statistics.
+    * @param network network to serve
+    * @param port port to listen on
+    */
+   private static void serve(Network network, int port) {
+      InferenceServer server;
+      try {
+         server = new InferenceServer(new ModelPublisher(network), port,
+                                      kServeBatchSize, kServeWaitMicros);
+      } catch (IOException e) {
+         System.out.println("Failed to start server: " + e.getMessage());
+         return;
+      }
+      System.out.println("Serving on port " + server.getPort());
+      System.out.println("Enter stats or quit: ");
+
+      Scanner in = new Scanner(System.in);
+      while (in.hasNextLine()) {
+         String line = in.nextLine();
+         if (line.contains("quit")) break;
+         if (line.contains("stats")) System.out.println(server.getStats());
+      }
+      server.close();
+   }
+
    /**
     * Calculates the percentage of test cases passed.
     * @param tests test suite
@@ -129,7 +215,7 @@ public class Main {
     * @return percenage of tests passed
     */
    public static double calcPercentCorrect(ArrayList<TestCase> tests,
-                                           Network network) {
+                                           Model network) {
       int correct = 0;
 
       // Run each test.
@@ -0,0 +1,5 @@
+javac network/*.java benchmark/*.java
+javac --add-modules jdk.incubator.vector -cp . -d . simd/network/*.java
+java --add-modules jdk.incubator.vector benchmark.Benchmarks "$@"
+rm network/*.class
+rm benchmark/*.class
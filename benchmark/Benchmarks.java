@@ -0,0 +1,250 @@
+package benchmark;
+
+import network.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks the network hot paths.
+ * Each argument is a comma separated list of layer sizes to benchmark,
+ * e.g. "2,3,3,1". With no arguments, a default range of sizes is used.
+ */
+public class Benchmarks {
+   /** Default layer sizes, from the toy network up to wide layers. */
+   private static final int[][] kDefaultLayerSizes = {
+      {2, 3, 3, 1},
+      {64, 256, 256, 10},
+      {784, 1024, 1024, 10},
+      {784, 4096, 4096, 10},
+   };
+
+   /** Number of sigmoid inputs per sigmoid operation. */
+   private static final int kSigmoidInputs = 4096;
+
+   /** Number of test cases in an epoch suite. */
+   private static final int kEpochTests = 64;
+
+   /** Number of worker threads for asynchronous epochs. */
+   private static final int kAsyncThreads = 2;
+
+   /** Fraction of weights pruned for the sparse model. */
+   private static final double kPrunedSparsity = 0.9;
+
+   /** Random seed for reproducible benchmarks. */
+   private static final long kSeed = 42;
+
+   /**
+    * Benchmark driver.
+    */
+   public static void main(String[] args) {
+      Harness harness = new Harness(3, 5, 500);
+
+      int[][] configs = kDefaultLayerSizes;
+      if (args.length > 0) {
+         configs = new int[args.length][];
+         for (int i = 0; i < args.length; ++i) {
+            configs[i] = parseLayerSizes(args[i]);
+         }
+      }
+
+      System.out.println("Kernels: " + Kernels.getImplementation());
+      benchmarkSigmoid(harness);
+      for (int[] layerSizes : configs) {
+         benchmarkNetwork(harness, layerSizes);
+      }
+   }
+
+   /**
+    * Benchmarks the estimated sigmoid against the true sigmoid.
+    * @param harness benchmark harness
+    */
+   private static void benchmarkSigmoid(Harness harness) {
+      Random rand = new Random(kSeed);
+      final double[] inputs = new double[kSigmoidInputs];
+      for (int i = 0; i < inputs.length; ++i) {
+         inputs[i] = rand.nextDouble() * 24 - 12;
+      }
+      String params = "n=" + kSigmoidInputs;
+
+      harness.measure("Sigmoid.calculate", params, new Harness.Operation() {
+         public double run() {
+            double sum = 0.0;
+            for (int i = 0; i < inputs.length; ++i) {
+               sum += Sigmoid.calculate(inputs[i]);
+            }
+            return sum;
+         }
+      });
+      harness.measure("Sigmoid.trueCalculate", params, new Harness.Operation() {
+         public double run() {
+            double sum = 0.0;
+            for (int i = 0; i < inputs.length; ++i) {
+               sum += Sigmoid.trueCalculate(inputs[i]);
+            }
+            return sum;
+         }
+      });
+   }
+
+   /**
+    * Benchmarks firing and teaching a network of a given shape.
+    * @param harness benchmark harness
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    */
+   private static void benchmarkNetwork(Harness harness, int[] layerSizes) {
+      String params = Arrays.toString(layerSizes).replace(" ", "");
+      Random rand = new Random(kSeed);
+
+      final Network network = new Network(layerSizes, kSeed);
+      final Workspace workspace = network.createWorkspace();
+      final Neuron neuron = network.getLayer(0).getNeuron(0);
+
+      // Build a random suite.
+      final ArrayList<TestCase> tests = new ArrayList<TestCase>();
+      final Trainer trainer = new Trainer();
+      for (int i = 0; i < kEpochTests; ++i) {
+         TestCase test = randomTest(layerSizes, rand);
+         tests.add(test);
+         trainer.addTest(test);
+      }
+      final TestCase test = tests.get(0);
+
+      harness.measure("Neuron.fire", params, new Harness.Operation() {
+         public double run() {
+            return neuron.fire(test.inputs);
+         }
+      });
+      harness.measure("Network.fire", params, new Harness.Operation() {
+         public double run() {
+            return network.fire(test.inputs)[0];
+         }
+      });
+      harness.measure("Network.fire(workspace)", params, new Harness.Operation() {
+         public double run() {
+            return network.fire(test.inputs, workspace)[0];
+         }
+      });
+      harness.measure("Network.learn", params, new Harness.Operation() {
+         public double run() {
+            network.learn(test, workspace);
+            return workspace.getOutput()[0];
+         }
+      });
+      final Network reluNetwork = network.clone();
+      reluNetwork.setHiddenActivation(Activation.kRelu);
+      harness.measure("Network.learn(relu)", params, new Harness.Operation() {
+         public double run() {
+            reluNetwork.learn(test, workspace);
+            return workspace.getOutput()[0];
+         }
+      });
+      final FloatNetwork floatNetwork = FloatNetwork.fromNetwork(network);
+      harness.measure("FloatNetwork.fire", params, new Harness.Operation() {
+         public double run() {
+            return floatNetwork.fireFloat(test.inputs)[0];
+         }
+      });
+      harness.measure("FloatNetwork.learn", params, new Harness.Operation() {
+         public double run() {
+            floatNetwork.learn(test);
+            return floatNetwork.fireFloat(test.inputs)[0];
+         }
+      });
+      final QuantizedModel quantized = new QuantizedModel(network, tests);
+      harness.measure("QuantizedModel.fire", params, new Harness.Operation() {
+         public double run() {
+            return quantized.fire(test.inputs)[0];
+         }
+      });
+      final Network pruned = network.clone();
+      pruned.pruneToSparsity(kPrunedSparsity);
+      final SparseModel sparse = new SparseModel(pruned);
+      harness.measure("SparseModel.fire", params + " s=" + kPrunedSparsity,
+                      new Harness.Operation() {
+         public double run() {
+            return sparse.fire(test.inputs)[0];
+         }
+      });
+      harness.measure("Network.fireBatch", params + "x" + kEpochTests,
+                      new Harness.Operation() {
+         public double run() {
+            return network.fireBatch(tests)[0];
+         }
+      });
+      harness.measure("Trainer.runEpoch", params + "x" + kEpochTests,
+                      new Harness.Operation() {
+         public double run() {
+            trainer.runEpoch(network, workspace);
+            return workspace.getOutput()[0];
+         }
+      });
+      final AsyncLearner asyncLearner = new AsyncLearner(kAsyncThreads);
+      final ListDataset dataset = new ListDataset(tests);
+      harness.measure("AsyncLearner.learn",
+                      params + "x" + kEpochTests + " t=" + kAsyncThreads,
+                      new Harness.Operation() {
+         public double run() {
+            DatasetReader reader = dataset.open();
+            try {
+               asyncLearner.learn(network, reader);
+            } finally {
+               reader.close();
+            }
+            return network.getLayer(0).getBiases()[0];
+         }
+      });
+      asyncLearner.shutdown();
+      final InputPipeline pipeline =
+         new InputPipeline(PackedDataset.pack(tests));
+      pipeline.setSeed(kSeed);
+      harness.measure("InputPipeline.open", params + "x" + kEpochTests,
+                      new Harness.Operation() {
+         public double run() {
+            double sum = 0.0;
+            DatasetReader reader = pipeline.open();
+            try {
+               TestCase next;
+               while ((next = reader.next()) != null) {
+                  sum += next.inputs[0];
+               }
+            } finally {
+               reader.close();
+            }
+            return sum;
+         }
+      });
+      pipeline.shutdown();
+   }
+
+   /**
+    * Creates a random test case for a network shape.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param rand random number generator
+    * @return test case
+    */
+   private static TestCase randomTest(int[] layerSizes, Random rand) {
+      double[] inputs = new double[layerSizes[0]];
+      double[] outputs = new double[layerSizes[layerSizes.length - 1]];
+      for (int i = 0; i < inputs.length; ++i) {
+         inputs[i] = rand.nextDouble() * 2 - 1;
+      }
+      outputs[rand.nextInt(outputs.length)] = 1.0;
+      return new TestCase(inputs, outputs);
+   }
+
+   /**
+    * Parses a comma separated list of layer sizes.
+    * @param text layer sizes
+    * @return layer sizes
+    */
+   private static int[] parseLayerSizes(String text) {
+      String[] tokens = text.split(",");
+      int[] layerSizes = new int[tokens.length];
+      for (int i = 0; i < tokens.length; ++i) {
+         layerSizes[i] = Integer.parseInt(tokens[i].trim());
+      }
+      return layerSizes;
+   }
+}
@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Times benchmark operations and profiles their allocation and GC load.
+ * Each operation is warmed up, then run in timed iterations until a time
+ * budget is spent.
+ */
+public class Harness {
+   /** Number of warmup iterations. */
+   private final int warmupIterations;
+   /** Number of measurement iterations. */
+   private final int measureIterations;
+   /** Minimum duration of an iteration in nanoseconds. */
+   private final long iterationNanos;
+
+   /** Thread bean used for allocation counts, if supported. */
+   private final com.sun.management.ThreadMXBean threadBean;
+
+   /** Sink that keeps benchmark results alive. */
+   private static volatile double sink;
+
+   /**
+    * An operation under benchmark.
+    */
+   public interface Operation {
+      /**
+       * Runs the operation once.
+       * @return a result that must not be optimized away
+       */
+      double run();
+   }
+
+   /**
+    * Constructor.
+    * @param warmupIterations number of warmup iterations
+    * @param measureIterations number of measurement iterations
+    * @param iterationMillis minimum duration of an iteration in millis
+    */
+   public Harness(int warmupIterations, int measureIterations,
+                  long iterationMillis) {
+      this.warmupIterations = warmupIterations;
+      this.measureIterations = measureIterations;
+      this.iterationNanos = iterationMillis * 1000000L;
+
+      java.lang.management.ThreadMXBean bean =
+         ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean) bean)
+             .isThreadAllocatedMemorySupported()) {
+         threadBean = (com.sun.management.ThreadMXBean) bean;
+         threadBean.setThreadAllocatedMemoryEnabled(true);
+      } else {
+         threadBean = null;
+      }
+   }
+
+   /**
+    * Benchmarks an operation and prints a result line.
+    * @param name benchmark name
+    * @param params parameter description
+    * @param operation operation to benchmark
+    */
+   public void measure(String name, String params, Operation operation) {
+      // Warm up.
+      for (int i = 0; i < warmupIterations; ++i) {
+         runIteration(operation);
+      }
+
+      long totalOps = 0;
+      long totalNanos = 0;
+      long totalBytes = 0;
+      long gcCount = -gcCount();
+      long gcMillis = -gcMillis();
+
+      // Measure.
+      for (int i = 0; i < measureIterations; ++i) {
+         long bytes = allocatedBytes();
+         long start = System.nanoTime();
+         long ops = runIteration(operation);
+         totalNanos += System.nanoTime() - start;
+         totalBytes += allocatedBytes() - bytes;
+         totalOps += ops;
+      }
+      gcCount += gcCount();
+      gcMillis += gcMillis();
+
+      System.out.printf("%-24s %-22s %14.1f ns/op %12.1f B/op %5d gc %6d ms\n",
+         name, params,
+         (double) totalNanos / totalOps,
+         (threadBean == null) ? Double.NaN : (double) totalBytes / totalOps,
+         gcCount, gcMillis);
+   }
+
+   /**
+    * Runs an operation repeatedly for at least one iteration duration.
+    * @param operation operation to run
+    * @return number of times the operation ran
+    */
+   private long runIteration(Operation operation) {
+      long ops = 0;
+      double result = 0.0;
+      long deadline = System.nanoTime() + iterationNanos;
+      do {
+         result += operation.run();
+         ++ops;
+      } while (System.nanoTime() < deadline);
+      sink = result;
+      return ops;
+   }
+
+   /**
+    * Gets the number of bytes allocated by the current thread.
+    * @return allocated bytes, or zero if unsupported
+    */
+   private long allocatedBytes() {
+      return (threadBean == null)
+         ? 0
+         : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+
+   /**
+    * Gets the total number of garbage collections.
+    * @return collection count
+    */
+   private static long gcCount() {
+      long count = 0;
+      for (GarbageCollectorMXBean bean :
+           ManagementFactory.getGarbageCollectorMXBeans()) {
+         count += Math.max(0, bean.getCollectionCount());
+      }
+      return count;
+   }
+
+   /**
+    * Gets the total time spent in garbage collection.
+    * @return collection time in milliseconds
+    */
+   private static long gcMillis() {
+      long millis = 0;
+      for (GarbageCollectorMXBean bean :
+           ManagementFactory.getGarbageCollectorMXBeans()) {
+         millis += Math.max(0, bean.getCollectionTime());
+      }
+      return millis;
+   }
+}
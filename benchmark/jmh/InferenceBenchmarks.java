@@ -0,0 +1,110 @@
+package benchmark.jmh;
+
+import network.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of micro-batched inference.
+ * Many client threads fire a published model through a shared
+ * MicroBatcher, as connections of the inference server do, comparing
+ * single-request batches against merged batches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Threads(64)
+public class InferenceBenchmarks {
+   /** Layer sizes of the served model. */
+   private static final int[] kLayerSizes = {64, 256, 256, 10};
+
+   /** Maximum time a request waits for a batch to fill (us). */
+   private static final long kMaxWaitMicros = 500;
+
+   /** Random seed for reproducible benchmarks. */
+   private static final long kSeed = 42;
+
+   /**
+    * Batcher shared by all client threads.
+    */
+   @State(Scope.Benchmark)
+   public static class Server {
+      /** Maximum number of requests per batch. */
+      @Param({"1", "32"})
+      public int maxBatchSize;
+
+      /** Batcher under benchmark. */
+      private MicroBatcher batcher;
+
+      /**
+       * Publishes the model and starts the batcher.
+       */
+      @Setup(Level.Trial)
+      public void setUp() {
+         ModelPublisher publisher =
+            new ModelPublisher(new Network(kLayerSizes, kSeed));
+         batcher = new MicroBatcher(publisher, maxBatchSize, kMaxWaitMicros);
+      }
+
+      /**
+       * Stops the batcher.
+       */
+      @TearDown(Level.Trial)
+      public void tearDown() {
+         batcher.shutdown();
+      }
+   }
+
+   /**
+    * Request reused by one client thread.
+    */
+   @State(Scope.Thread)
+   public static class Client {
+      /** Reusable request. */
+      private final MicroBatcher.Request request = new MicroBatcher.Request();
+
+      /**
+       * Fills the request with random inputs.
+       */
+      @Setup(Level.Trial)
+      public void setUp() {
+         Random rand = new Random(kSeed);
+         request.input = new double[kLayerSizes[0]];
+         for (int i = 0; i < request.input.length; ++i) {
+            request.input[i] = rand.nextDouble() * 2 - 1;
+         }
+      }
+   }
+
+   /**
+    * Fires one request through the batcher.
+    * @param server shared batcher
+    * @param client client's request
+    * @return output
+    * @throws InterruptedException if interrupted while waiting
+    */
+   @Benchmark
+   public double[] fire(Server server, Client client)
+         throws InterruptedException {
+      server.batcher.fire(client.request);
+      return client.request.output;
+   }
+}
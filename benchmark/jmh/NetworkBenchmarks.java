@@ -0,0 +1,288 @@
+package benchmark.jmh;
+
+import network.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the network hot paths.
+ * Mirrors the hand-rolled Benchmarks driver over the same layer sizes,
+ * with the sigmoid benchmarks in SigmoidBenchmarks, so its numbers can be
+ * reproduced with a standard harness. Build with "mvn -Pjmh package" and
+ * run "java -jar target/benchmarks.jar -prof gc" to report allocation and
+ * GC load alongside time, optionally with "-p layerSizes=64-256-256-10"
+ * to pick a shape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class NetworkBenchmarks {
+   /** Number of test cases in an epoch suite. */
+   private static final int kEpochTests = 64;
+
+   /** Number of worker threads for asynchronous epochs. */
+   private static final int kAsyncThreads = 2;
+
+   /** Fraction of weights pruned for the sparse model. */
+   private static final double kPrunedSparsity = 0.9;
+
+   /** Random seed for reproducible benchmarks. */
+   private static final long kSeed = 42;
+
+   /**
+    * Dash separated layer sizes of the network under benchmark, since JMH
+    * splits parameter values on commas.
+    */
+   @Param({"2-3-3-1", "64-256-256-10", "784-1024-1024-10",
+           "784-4096-4096-10"})
+   public String layerSizes;
+
+   /** Network under benchmark. */
+   private Network network;
+
+   /** Copy of the network with ReLU hidden layers. */
+   private Network reluNetwork;
+
+   /** Workspace for the network. */
+   private Workspace workspace;
+
+   /** Single-precision copy of the network. */
+   private FloatNetwork floatNetwork;
+
+   /** Int8 copy of the network. */
+   private QuantizedModel quantized;
+
+   /** Sparse copy of the pruned network. */
+   private SparseModel sparse;
+
+   /** Random suite. */
+   private ArrayList<TestCase> tests;
+
+   /** Trainer holding the suite. */
+   private Trainer trainer;
+
+   /** Dataset view of the suite. */
+   private ListDataset dataset;
+
+   /** Asynchronous learner. */
+   private AsyncLearner asyncLearner;
+
+   /** Input pipeline over the suite. */
+   private InputPipeline pipeline;
+
+   /** First neuron of the network's first layer. */
+   private Neuron neuron;
+
+   /** Test case fired by single-case benchmarks. */
+   private TestCase test;
+
+   /**
+    * Builds the network, its derived models and a random suite.
+    */
+   @Setup(Level.Trial)
+   public void setUp() {
+      String[] tokens = layerSizes.split("-");
+      int[] sizes = new int[tokens.length];
+      for (int i = 0; i < tokens.length; ++i) {
+         sizes[i] = Integer.parseInt(tokens[i].trim());
+      }
+
+      Random rand = new Random(kSeed);
+      network = new Network(sizes, kSeed);
+      workspace = network.createWorkspace();
+      neuron = network.getLayer(0).getNeuron(0);
+      reluNetwork = network.clone();
+      reluNetwork.setHiddenActivation(Activation.kRelu);
+
+      tests = new ArrayList<TestCase>();
+      trainer = new Trainer();
+      for (int i = 0; i < kEpochTests; ++i) {
+         double[] inputs = new double[sizes[0]];
+         double[] outputs = new double[sizes[sizes.length - 1]];
+         for (int j = 0; j < inputs.length; ++j) {
+            inputs[j] = rand.nextDouble() * 2 - 1;
+         }
+         outputs[rand.nextInt(outputs.length)] = 1.0;
+         TestCase testCase = new TestCase(inputs, outputs);
+         tests.add(testCase);
+         trainer.addTest(testCase);
+      }
+      test = tests.get(0);
+      dataset = new ListDataset(tests);
+
+      floatNetwork = FloatNetwork.fromNetwork(network);
+      quantized = new QuantizedModel(network, tests);
+      Network pruned = network.clone();
+      pruned.pruneToSparsity(kPrunedSparsity);
+      sparse = new SparseModel(pruned);
+      asyncLearner = new AsyncLearner(kAsyncThreads);
+      pipeline = new InputPipeline(PackedDataset.pack(tests));
+      pipeline.setSeed(kSeed);
+   }
+
+   /**
+    * Shuts down the asynchronous learner's workers and the pipeline's
+    * producers.
+    */
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      asyncLearner.shutdown();
+      pipeline.shutdown();
+   }
+
+   /**
+    * Fires a single neuron through its layer view.
+    * @return output
+    */
+   @Benchmark
+   public double neuronFire() {
+      return neuron.fire(test.inputs);
+   }
+
+   /**
+    * Fires the network, allocating its outputs.
+    * @return output
+    */
+   @Benchmark
+   public double[] fire() {
+      return network.fire(test.inputs);
+   }
+
+   /**
+    * Fires the network in a workspace.
+    * @return output
+    */
+   @Benchmark
+   public double[] fireWorkspace() {
+      return network.fire(test.inputs, workspace);
+   }
+
+   /**
+    * Teaches the network a single test case.
+    * @return output before the update
+    */
+   @Benchmark
+   public double[] learn() {
+      network.learn(test, workspace);
+      return workspace.getOutput();
+   }
+
+   /**
+    * Teaches the ReLU network a single test case.
+    * @return output before the update
+    */
+   @Benchmark
+   public double[] learnRelu() {
+      reluNetwork.learn(test, workspace);
+      return workspace.getOutput();
+   }
+
+   /**
+    * Fires the single-precision network.
+    * @return output
+    */
+   @Benchmark
+   public float[] floatFire() {
+      return floatNetwork.fireFloat(test.inputs);
+   }
+
+   /**
+    * Teaches the single-precision network a single test case.
+    * @return output after the update
+    */
+   @Benchmark
+   public float[] floatLearn() {
+      floatNetwork.learn(test);
+      return floatNetwork.fireFloat(test.inputs);
+   }
+
+   /**
+    * Fires the int8 model.
+    * @return output
+    */
+   @Benchmark
+   public double[] quantizedFire() {
+      return quantized.fire(test.inputs);
+   }
+
+   /**
+    * Fires the sparse model of the pruned network.
+    * @return output
+    */
+   @Benchmark
+   public double[] sparseFire() {
+      return sparse.fire(test.inputs);
+   }
+
+   /**
+    * Fires the network over the whole suite in batches.
+    * @return outputs
+    */
+   @Benchmark
+   public double[] fireBatch() {
+      return network.fireBatch(tests);
+   }
+
+   /**
+    * Teaches the network one epoch of the suite on this thread.
+    * @return output of the last update
+    */
+   @Benchmark
+   public double[] runEpoch() {
+      trainer.runEpoch(network, workspace);
+      return workspace.getOutput();
+   }
+
+   /**
+    * Teaches the network one epoch of the suite with lock-free workers.
+    * @return first bias of the network
+    */
+   @Benchmark
+   public double asyncEpoch() {
+      DatasetReader reader = dataset.open();
+      try {
+         asyncLearner.learn(network, reader);
+      } finally {
+         reader.close();
+      }
+      return network.getLayer(0).getBiases()[0];
+   }
+
+   /**
+    * Reads one pass of the suite through the input pipeline.
+    * @return sum of the first input of each test case
+    */
+   @Benchmark
+   public double pipelineOpen() {
+      double sum = 0.0;
+      DatasetReader reader = pipeline.open();
+      try {
+         TestCase next;
+         while ((next = reader.next()) != null) {
+            sum += next.inputs[0];
+         }
+      } finally {
+         reader.close();
+      }
+      return sum;
+   }
+}
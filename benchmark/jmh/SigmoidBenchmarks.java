@@ -0,0 +1,77 @@
+package benchmark.jmh;
+
+import network.Sigmoid;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the estimated sigmoid against the true sigmoid.
+ * Mirrors the hand-rolled Benchmarks driver's sigmoid benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class SigmoidBenchmarks {
+   /** Number of sigmoid inputs per operation. */
+   private static final int kSigmoidInputs = 4096;
+
+   /** Random seed for reproducible benchmarks. */
+   private static final long kSeed = 42;
+
+   /** Sigmoid inputs, spanning the table's range. */
+   private double[] inputs;
+
+   /**
+    * Generates the sigmoid inputs.
+    */
+   @Setup(Level.Trial)
+   public void setUp() {
+      Random rand = new Random(kSeed);
+      inputs = new double[kSigmoidInputs];
+      for (int i = 0; i < inputs.length; ++i) {
+         inputs[i] = rand.nextDouble() * 24 - 12;
+      }
+   }
+
+   /**
+    * Sums the estimated sigmoid of every input.
+    * @return sum
+    */
+   @Benchmark
+   public double calculate() {
+      double sum = 0.0;
+      for (int i = 0; i < inputs.length; ++i) {
+         sum += Sigmoid.calculate(inputs[i]);
+      }
+      return sum;
+   }
+
+   /**
+    * Sums the true sigmoid of every input.
+    * @return sum
+    */
+   @Benchmark
+   public double trueCalculate() {
+      double sum = 0.0;
+      for (int i = 0; i < inputs.length; ++i) {
+         sum += Sigmoid.trueCalculate(inputs[i]);
+      }
+      return sum;
+   }
+}
@@ -0,0 +1,298 @@
+package network;
+
+/**
+ * Represents a neuron activation function.
+ * Each activation has a fused derivative kernel that scales
+ * backpropagated errors by the activation's derivative, computed from the
+ * layer's outputs alone so no pre-activation values need to be kept.
+ */
+public abstract class Activation {
+   /** Logistic sigmoid, read from the lookup table. */
+   public static final Activation kSigmoid = new SigmoidActivation();
+   /** Rectified linear unit. */
+   public static final Activation kRelu = new ReluActivation(0.0, 1, "relu");
+   /** Leaky rectified linear unit, with a slope of 0.01 below zero. */
+   public static final Activation kLeakyRelu =
+      new ReluActivation(0.01, 2, "leaky relu");
+   /** Hyperbolic tangent. */
+   public static final Activation kTanh = new TanhActivation();
+   /** Softmax over the whole layer. */
+   public static final Activation kSoftmax = new SoftmaxActivation();
+
+   /** Activations by code. */
+   private static final Activation[] kByCode =
+      { kSigmoid, kRelu, kLeakyRelu, kTanh, kSoftmax };
+
+   /** Code identifying the activation in model files. */
+   private final int code;
+   /** Name of the activation. */
+   private final String name;
+
+   /**
+    * Constructor.
+    * @param code code identifying the activation in model files
+    * @param name name of the activation
+    */
+   Activation(int code, String name) {
+      this.code = code;
+      this.name = name;
+   }
+
+   /**
+    * Gets an activation by its code.
+    * @param code activation code
+    * @return activation, or null if the code is unknown
+    */
+   public static Activation fromCode(int code) {
+      return (code >= 0 && code < kByCode.length) ? kByCode[code] : null;
+   }
+
+   /**
+    * Getter for code.
+    * @return code identifying the activation in model files
+    */
+   public int getCode() {
+      return code;
+   }
+
+   /**
+    * Calculates the activation of a single neuron.
+    * @param x neuron input
+    * @return neuron output
+    * @throws UnsupportedOperationException if the activation depends on
+    *         the whole layer
+    */
+   public abstract double calculate(double x);
+
+   /**
+    * Applies the activation to a layer's inputs in place.
+    * @param values neuron inputs, replaced by outputs
+    * @param offset offset of the layer within the array
+    * @param length number of neurons
+    */
+   public void apply(double[] values, int offset, int length) {
+      for (int i = offset; i < offset + length; ++i) {
+         values[i] = calculate(values[i]);
+      }
+   }
+
+   /**
+    * Applies the activation to a batch of layer inputs in place.
+    * @param values neuron inputs (rows x size, row-major), replaced by
+    *               outputs
+    * @param rows number of rows
+    * @param size number of neurons per row
+    */
+   public void applyBatch(double[] values, int rows, int size) {
+      apply(values, 0, rows * size);
+   }
+
+   /**
+    * Scales backpropagated errors by the derivative of the activation.
+    * errors[i] = sum over j of (errors[j] * d outputs[j] / d inputs[i])
+    * @param outputs layer outputs
+    * @param errors errors with respect to the outputs, replaced by errors
+    *               with respect to the inputs
+    * @param length number of neurons
+    */
+   public abstract void derivative(double[] outputs, double[] errors,
+                                   int length);
+
+   /**
+    * Returns the name of this activation.
+    * @return name
+    */
+   public String toString() {
+      return name;
+   }
+
+   /**
+    * Logistic sigmoid.
+    * Single and batched firing both read the lookup table, so they agree
+    * exactly.
+    * f'(x) = f(x) * (1 - f(x))
+    */
+   private static class SigmoidActivation extends Activation {
+      /**
+       * Constructor.
+       */
+      SigmoidActivation() {
+         super(0, "sigmoid");
+      }
+
+      /**
+       * Reads the sigmoid from the lookup table.
+       * @param x neuron input
+       * @return neuron output
+       */
+      public double calculate(double x) {
+         return Sigmoid.calculate(x);
+      }
+
+      /**
+       * Scales errors by f(x) * (1 - f(x)).
+       * @param outputs layer outputs
+       * @param errors errors with respect to the outputs, replaced by
+       *               errors with respect to the inputs
+       * @param length number of neurons
+       */
+      public void derivative(double[] outputs, double[] errors, int length) {
+         for (int i = 0; i < length; ++i) {
+            errors[i] *= outputs[i] * (1 - outputs[i]);
+         }
+      }
+   }
+
+   /**
+    * Rectified linear unit, optionally leaky.
+    * f(x) = x for x > 0, slope * x otherwise
+    */
+   private static class ReluActivation extends Activation {
+      /** Slope below zero. */
+      private final double slope;
+
+      /**
+       * Constructor.
+       * @param slope slope below zero
+       * @param code code identifying the activation in model files
+       * @param name name of the activation
+       */
+      ReluActivation(double slope, int code, String name) {
+         super(code, name);
+         this.slope = slope;
+      }
+
+      /**
+       * Passes positive inputs and scales the rest by the slope.
+       * @param x neuron input
+       * @return neuron output
+       */
+      public double calculate(double x) {
+         return (x > 0) ? x : slope * x;
+      }
+
+      /**
+       * Scales errors below zero by the slope.
+       * @param outputs layer outputs
+       * @param errors errors with respect to the outputs, replaced by
+       *               errors with respect to the inputs
+       * @param length number of neurons
+       */
+      public void derivative(double[] outputs, double[] errors, int length) {
+         // Outputs are positive exactly where inputs are.
+         for (int i = 0; i < length; ++i) {
+            if (outputs[i] <= 0) errors[i] *= slope;
+         }
+      }
+   }
+
+   /**
+    * Hyperbolic tangent.
+    * f'(x) = 1 - f(x)^2
+    */
+   private static class TanhActivation extends Activation {
+      /**
+       * Constructor.
+       */
+      TanhActivation() {
+         super(3, "tanh");
+      }
+
+      /**
+       * Calculates the hyperbolic tangent.
+       * @param x neuron input
+       * @return neuron output
+       */
+      public double calculate(double x) {
+         return Math.tanh(x);
+      }
+
+      /**
+       * Scales errors by 1 - f(x)^2.
+       * @param outputs layer outputs
+       * @param errors errors with respect to the outputs, replaced by
+       *               errors with respect to the inputs
+       * @param length number of neurons
+       */
+      public void derivative(double[] outputs, double[] errors, int length) {
+         for (int i = 0; i < length; ++i) {
+            errors[i] *= 1 - outputs[i] * outputs[i];
+         }
+      }
+   }
+
+   /**
+    * Softmax over the whole layer.
+    * f(x)[i] = e^x[i] / sum over j of e^x[j]
+    */
+   private static class SoftmaxActivation extends Activation {
+      /**
+       * Constructor.
+       */
+      SoftmaxActivation() {
+         super(4, "softmax");
+      }
+
+      /**
+       * Always throws, as softmax depends on the whole layer.
+       * @param x neuron input
+       * @return never returns
+       * @throws UnsupportedOperationException always
+       */
+      public double calculate(double x) {
+         throw new UnsupportedOperationException(
+            "Softmax depends on the whole layer!");
+      }
+
+      /**
+       * Applies softmax to a layer's inputs in place.
+       * @param values neuron inputs, replaced by outputs
+       * @param offset offset of the layer within the array
+       * @param length number of neurons
+       */
+      public void apply(double[] values, int offset, int length) {
+         // Subtract the largest input so the exponentials cannot overflow.
+         double max = Double.NEGATIVE_INFINITY;
+         for (int i = offset; i < offset + length; ++i) {
+            max = Math.max(max, values[i]);
+         }
+         double sum = 0.0;
+         for (int i = offset; i < offset + length; ++i) {
+            values[i] = Math.exp(values[i] - max);
+            sum += values[i];
+         }
+         double scale = 1.0 / sum;
+         for (int i = offset; i < offset + length; ++i) {
+            values[i] *= scale;
+         }
+      }
+
+      /**
+       * Applies softmax to each row of a batch in place.
+       * @param values neuron inputs (rows x size, row-major), replaced by
+       *               outputs
+       * @param rows number of rows
+       * @param size number of neurons per row
+       */
+      public void applyBatch(double[] values, int rows, int size) {
+         for (int r = 0; r < rows; ++r) {
+            apply(values, r * size, size);
+         }
+      }
+
+      /**
+       * Multiplies errors by the softmax Jacobian.
+       * @param outputs layer outputs
+       * @param errors errors with respect to the outputs, replaced by
+       *               errors with respect to the inputs
+       * @param length number of neurons
+       */
+      public void derivative(double[] outputs, double[] errors, int length) {
+         // errors[i] = outputs[i] * (errors[i] - sum of errors[j] * outputs[j])
+         double dot = Kernels.dot(errors, 0, outputs, 0, length);
+         for (int i = 0; i < length; ++i) {
+            errors[i] = outputs[i] * (errors[i] - dot);
+         }
+      }
+   }
+}
@@ -0,0 +1,106 @@
+package network;
+
+/**
+ * Adam: gradient descent with bias-corrected running averages of the
+ * gradient and squared gradient.
+ * m[i] = beta1 * m[i] + (1 - beta1) * g[i]
+ * v[i] = beta2 * v[i] + (1 - beta2) * g[i]^2
+ * params[i] += learningRate * m'[i] / (sqrt(v'[i]) + epsilon)
+ * where m' and v' are corrected for the zero initialization of m and v.
+ */
+public class AdamOptimizer implements Optimizer {
+   /** Default decay of the gradient average. */
+   public static final double kDefaultBeta1 = 0.9;
+   /** Default decay of the squared gradient average. */
+   public static final double kDefaultBeta2 = 0.999;
+   /** Term added to the denominator for stability. */
+   private static final double kEpsilon = 1e-8;
+
+   /** Learning rate. */
+   private final double learningRate;
+   /** Decay of the gradient average. */
+   private final double beta1;
+   /** Decay of the squared gradient average. */
+   private final double beta2;
+
+   /** Running average of each parameter's gradient. */
+   private final ParameterState mean = new ParameterState();
+   /** Running average of each parameter's squared gradient. */
+   private final ParameterState meanSquare = new ParameterState();
+
+   /** Number of steps taken. */
+   private long steps;
+   /** Step size for the current step, including bias correction. */
+   private double stepSize;
+   /** Bias correction of the squared gradient average. */
+   private double squareCorrection;
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate, typically 0.001
+    */
+   public AdamOptimizer(double learningRate) {
+      this(learningRate, kDefaultBeta1, kDefaultBeta2);
+   }
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate
+    * @param beta1 decay of the gradient average
+    * @param beta2 decay of the squared gradient average
+    */
+   public AdamOptimizer(double learningRate, double beta1, double beta2) {
+      this.learningRate = learningRate;
+      this.beta1 = beta1;
+      this.beta2 = beta2;
+   }
+
+   /**
+    * Counts a step and computes its bias-corrected step size.
+    */
+   public void step() {
+      ++steps;
+      stepSize = learningRate / (1 - Math.pow(beta1, steps));
+      squareCorrection = 1 / (1 - Math.pow(beta2, steps));
+   }
+
+   /**
+    * Updates the slot's gradient averages and steps along the corrected
+    * average.
+    * @param slot parameter slot index
+    * @param params parameters to update
+    * @param gradients gradient for each parameter
+    * @param gradientScale scale applied to each gradient
+    */
+   public void update(int slot, double[] params, double[] gradients,
+                      double gradientScale) {
+      double[] m = mean.get(slot, params.length);
+      double[] v = meanSquare.get(slot, params.length);
+      for (int i = 0; i < params.length; ++i) {
+         double g = gradientScale * gradients[i];
+         double mi = beta1 * m[i] + (1 - beta1) * g;
+         double vi = beta2 * v[i] + (1 - beta2) * g * g;
+         m[i] = mi;
+         v[i] = vi;
+         params[i] += stepSize * mi /
+                      (Math.sqrt(vi * squareCorrection) + kEpsilon);
+      }
+   }
+
+   /**
+    * Zeroes the averages of every slot and the step count.
+    */
+   public void reset() {
+      mean.clear();
+      meanSquare.clear();
+      steps = 0;
+   }
+
+   /**
+    * Creates an optimizer with the same settings and no averages.
+    * @return fresh optimizer
+    */
+   public Optimizer copy() {
+      return new AdamOptimizer(learningRate, beta1, beta2);
+   }
+}
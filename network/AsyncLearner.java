@@ -0,0 +1,272 @@
+package network;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Teaches a network with asynchronous, lock-free updates.
+ * Worker threads each take test cases from a shared pass and teach the
+ * network one test case at a time, writing updates straight into the
+ * shared weights with no barrier between them. An update may be
+ * calculated from weights that other threads have since changed; the
+ * number of updates committed in the meantime is the update's staleness,
+ * which is recorded for a sample of updates. Each worker counts its own
+ * updates, so workers share no counters. Unlike data-parallel training,
+ * results are not reproducible.
+ */
+public class AsyncLearner {
+   /** Number of test cases a worker takes from the pass at once. */
+   private static final int kChunkSize = 64;
+
+   /** Default number of updates per staleness sample. */
+   public static final int kDefaultStalenessSampling = 64;
+
+   /**
+    * Spacing of the workers' update counters, so that each counter sits on
+    * its own cache line.
+    */
+   private static final int kCounterStride = 8;
+
+   /** Worker pool. */
+   private final ForkJoinPool pool;
+
+   /** Number of worker threads. */
+   private final int numThreads;
+
+   /** Workspace for each worker. */
+   private Workspace[] workspaces;
+
+   /** Buffer of test cases taken from a pass, for each worker. */
+   private TestCase[][] chunks;
+
+   /**
+    * Number of updates committed so far by each worker, written only by
+    * the worker itself.
+    */
+   private final AtomicLongArray updates;
+
+   /** Staleness of sampled updates, in updates committed by others. */
+   private final Histogram staleness = new Histogram();
+
+   /** Number of updates per staleness sample, or 0 not to sample. */
+   private volatile int stalenessSampling = kDefaultStalenessSampling;
+
+   /**
+    * Constructor.
+    * @param numThreads number of worker threads
+    */
+   public AsyncLearner(int numThreads) {
+      if (numThreads < 1)
+         throw new IllegalArgumentException("Invalid thread count!");
+      this.numThreads = numThreads;
+      this.pool = new ForkJoinPool(numThreads);
+      this.updates = new AtomicLongArray(numThreads * kCounterStride);
+   }
+
+   /**
+    * Sets how often the staleness of an update is recorded.
+    * Measuring staleness reads every worker's update counter, so sampling
+    * keeps its cost off most updates.
+    * @param interval number of updates per sample for each worker, 1 to
+    *                 record every update, or 0 to record none
+    */
+   public void setStalenessSampling(int interval) {
+      if (interval < 0)
+         throw new IllegalArgumentException("Invalid sampling interval!");
+      this.stalenessSampling = interval;
+   }
+
+   /**
+    * Teaches the network using each test in a pass once.
+    * Workers take test cases from the reader in chunks, copying them since
+    * readers may reuse the test cases they return.
+    * @param network network to teach
+    * @param reader dataset pass
+    */
+   public void learn(Network network, DatasetReader reader) {
+      prepareWorkspaces(network);
+      pool.invoke(new LearnTask(network, reader, null, null, 0, numThreads));
+   }
+
+   /**
+    * Teaches the network using each row of a packed dataset once.
+    * Workers take rows in chunks, in the dataset's current order.
+    * @param network network to teach
+    * @param dataset packed dataset
+    */
+   public void learn(Network network, PackedDataset dataset) {
+      prepareWorkspaces(network);
+      pool.invoke(new LearnTask(network, null, dataset, new AtomicInteger(),
+                                0, numThreads));
+   }
+
+   /**
+    * Getter for the staleness of sampled updates so far.
+    * @return staleness histogram, in updates
+    */
+   public Histogram getStaleness() {
+      return staleness;
+   }
+
+   /**
+    * Gets the number of updates committed so far.
+    * @return number of updates
+    */
+   public long getUpdates() {
+      long total = 0;
+      for (int i = 0; i < numThreads; ++i) {
+         total += updates.get(i * kCounterStride);
+      }
+      return total;
+   }
+
+   /**
+    * Shuts down the worker pool.
+    */
+   public void shutdown() {
+      pool.shutdown();
+   }
+
+   /**
+    * Allocates workspaces on first use, or if the network changed shape.
+    * @param network network to teach
+    */
+   private void prepareWorkspaces(Network network) {
+      if (workspaces == null ||
+          !workspaces[0].fits(network.getLayerSizes())) {
+         workspaces = new Workspace[numThreads];
+         chunks = new TestCase[numThreads][kChunkSize];
+         for (int i = 0; i < numThreads; ++i) {
+            workspaces[i] = network.createWorkspace();
+         }
+      }
+   }
+
+   /**
+    * Runs a range of workers, each teaching until the pass is exhausted.
+    */
+   private class LearnTask extends RecursiveAction {
+      /** Serialization version. */
+      private static final long serialVersionUID = 1L;
+
+      /** Network to teach. */
+      private final Network network;
+      /** Dataset pass, or null if learning from a packed dataset. */
+      private final DatasetReader reader;
+      /** Packed dataset, or null if learning from a dataset pass. */
+      private final PackedDataset packed;
+      /** Position of the next untaken row of the packed dataset. */
+      private final AtomicInteger cursor;
+      /** First worker in range. */
+      private final int workerLow;
+      /** Worker after the last in range. */
+      private final int workerHigh;
+
+      /**
+       * Constructor.
+       * @param network network to teach
+       * @param reader dataset pass, or null
+       * @param packed packed dataset, or null
+       * @param cursor position of the next untaken packed row, or null
+       * @param workerLow first worker in range
+       * @param workerHigh worker after the last in range
+       */
+      LearnTask(Network network, DatasetReader reader, PackedDataset packed,
+                AtomicInteger cursor, int workerLow, int workerHigh) {
+         this.network = network;
+         this.reader = reader;
+         this.packed = packed;
+         this.cursor = cursor;
+         this.workerLow = workerLow;
+         this.workerHigh = workerHigh;
+      }
+
+      /**
+       * Splits the range of workers, or runs a single worker.
+       */
+      protected void compute() {
+         if (workerHigh - workerLow > 1) {
+            int mid = (workerLow + workerHigh) >>> 1;
+            invokeAll(
+               new LearnTask(network, reader, packed, cursor, workerLow, mid),
+               new LearnTask(network, reader, packed, cursor, mid,
+                             workerHigh));
+         } else if (packed != null) {
+            learnPacked(workerLow);
+         } else {
+            learnStreamed(workerLow);
+         }
+      }
+
+      /**
+       * Teaches rows of the packed dataset until none are left.
+       * @param worker worker index
+       */
+      private void learnPacked(int worker) {
+         Workspace workspace = workspaces[worker];
+         int counter = worker * kCounterStride;
+         int sampling = stalenessSampling;
+         long count = updates.get(counter);
+         int size = packed.size();
+         int start;
+         while ((start = cursor.getAndAdd(kChunkSize)) < size) {
+            int end = Math.min(start + kChunkSize, size);
+            for (int i = start; i < end; ++i) {
+               boolean sample = sampling > 0 && count % sampling == 0;
+               long read = sample ? getUpdates() : 0;
+               network.learnAsync(packed, packed.getRow(i), workspace);
+               updates.lazySet(counter, ++count);
+               if (sample) staleness.record(getUpdates() - read - 1);
+            }
+         }
+      }
+
+      /**
+       * Teaches test cases from the pass until it is exhausted.
+       * @param worker worker index
+       */
+      private void learnStreamed(int worker) {
+         Workspace workspace = workspaces[worker];
+         TestCase[] chunk = chunks[worker];
+         int counter = worker * kCounterStride;
+         int sampling = stalenessSampling;
+         long count = updates.get(counter);
+         int taken;
+         while ((taken = take(chunk)) > 0) {
+            for (int i = 0; i < taken; ++i) {
+               boolean sample = sampling > 0 && count % sampling == 0;
+               long read = sample ? getUpdates() : 0;
+               network.learnAsync(chunk[i], workspace);
+               updates.lazySet(counter, ++count);
+               if (sample) staleness.record(getUpdates() - read - 1);
+            }
+         }
+      }
+
+      /**
+       * Copies the next chunk of test cases from the shared pass.
+       * @param chunk buffer of test cases, grown on first use
+       * @return number of test cases taken
+       */
+      private int take(TestCase[] chunk) {
+         synchronized (reader) {
+            int count = 0;
+            TestCase test;
+            while (count < chunk.length && (test = reader.next()) != null) {
+               if (chunk[count] == null) {
+                  chunk[count] = new TestCase(new double[test.inputs.length],
+                                              new double[test.outputs.length]);
+               }
+               TestCase slot = chunk[count++];
+               System.arraycopy(test.inputs, 0, slot.inputs, 0,
+                                test.inputs.length);
+               System.arraycopy(test.outputs, 0, slot.outputs, 0,
+                                test.outputs.length);
+            }
+            return count;
+         }
+      }
+   }
+}
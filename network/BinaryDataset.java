@@ -0,0 +1,314 @@
+package network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a dataset streamed from a binary file.
+ *
+ * All values are little-endian. The file starts with a 24 byte header:
+ *   int magic, int version, int inputs, int outputs, long record count.
+ * Each record follows as its inputs, then its expected outputs, as doubles.
+ * Passes map the file a chunk at a time, so the file may be much larger
+ * than the heap.
+ */
+public class BinaryDataset implements Dataset {
+   /** File magic ("CNND" in little-endian order). */
+   public static final int kMagic = 0x444E4E43;
+
+   /** Current format version. */
+   public static final int kVersion = 1;
+
+   /** Size of the header in bytes. */
+   private static final int kHeaderSize = 24;
+
+   /** Approximate number of bytes mapped at a time. */
+   private static final int kChunkSize = 1 << 24;
+
+   /** Size of the buffer used to stream records to disk. */
+   private static final int kWriteBufferSize = 1 << 16;
+
+   /** Dataset file. */
+   private final Path path;
+
+   /** Number of inputs per test case. */
+   private final int numInputs;
+   /** Number of outputs per test case. */
+   private final int numOutputs;
+   /** Number of records. */
+   private final long count;
+
+   /**
+    * Constructor.
+    * Reads and validates the header.
+    * @param path dataset file
+    * @throws IOException if the file cannot be read or is invalid
+    */
+   public BinaryDataset(Path path) throws IOException {
+      this.path = path;
+
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+         ByteBuffer header =
+            ByteBuffer.allocate(kHeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+         while (header.hasRemaining()) {
+            if (channel.read(header) < 0)
+               throw new IOException("Truncated dataset file!");
+         }
+         header.flip();
+
+         if (header.getInt() != kMagic)
+            throw new IOException("Invalid dataset file!");
+         if (header.getInt() != kVersion)
+            throw new IOException("Unsupported dataset file version!");
+         numInputs = header.getInt();
+         numOutputs = header.getInt();
+         count = header.getLong();
+
+         if (numInputs < 1 || numOutputs < 1 || count < 0)
+            throw new IOException("Invalid dataset file!");
+         if (channel.size() < kHeaderSize + count * recordSize())
+            throw new IOException("Truncated dataset file!");
+      } finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs
+    */
+   public int getNumInputs() {
+      return numInputs;
+   }
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs
+    */
+   public int getNumOutputs() {
+      return numOutputs;
+   }
+
+   /**
+    * Gets the number of test cases.
+    * @return number of test cases
+    */
+   public long size() {
+      return count;
+   }
+
+   /**
+    * Opens a pass over the file.
+    * @return reader positioned at the first test case
+    */
+   public DatasetReader open() {
+      try {
+         return new Reader();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Writes a dataset to a binary file.
+    * @param dataset dataset to write
+    * @param path file to write to
+    * @throws IOException if the file cannot be written
+    */
+   public static void write(Dataset dataset, Path path) throws IOException {
+      Writer writer = new Writer(path, dataset.getNumInputs(),
+                                 dataset.getNumOutputs());
+      DatasetReader reader = dataset.open();
+      try {
+         TestCase test;
+         while ((test = reader.next()) != null) {
+            writer.write(test);
+         }
+      } finally {
+         reader.close();
+         writer.close();
+      }
+   }
+
+   /**
+    * Gets the size of a record in bytes.
+    * @return record size
+    */
+   private long recordSize() {
+      return 8L * (numInputs + numOutputs);
+   }
+
+   /**
+    * Reads a pass over the file through a sliding mapped window.
+    */
+   private class Reader implements DatasetReader {
+      /** File channel. */
+      private final FileChannel channel;
+      /** Reused test case. */
+      private final TestCase sample;
+      /** Number of records per mapped chunk. */
+      private final long chunkRecords;
+
+      /** Currently mapped chunk. */
+      private DoubleBuffer chunk;
+      /** Index of the next record to map. */
+      private long nextRecord = 0;
+
+      /**
+       * Constructor.
+       * @throws IOException if the file cannot be opened
+       */
+      Reader() throws IOException {
+         channel = FileChannel.open(path, StandardOpenOption.READ);
+         sample = new TestCase(new double[numInputs], new double[numOutputs]);
+         chunkRecords = Math.max(1, kChunkSize / recordSize());
+      }
+
+      /**
+       * Reads the next test case.
+       * @return next test case (reused), or null at the end of the pass
+       */
+      public TestCase next() {
+         if (chunk == null || !chunk.hasRemaining()) {
+            if (nextRecord >= count) return null;
+            mapNextChunk();
+         }
+         chunk.get(sample.inputs).get(sample.outputs);
+         return sample;
+      }
+
+      /**
+       * Maps the next chunk of records.
+       */
+      private void mapNextChunk() {
+         long records = Math.min(chunkRecords, count - nextRecord);
+         try {
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                  kHeaderSize + nextRecord * recordSize(),
+                  records * recordSize())
+               .order(ByteOrder.LITTLE_ENDIAN)
+               .asDoubleBuffer();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+         nextRecord += records;
+      }
+
+      /**
+       * Closes the file.
+       */
+      public void close() {
+         try {
+            channel.close();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+
+   /**
+    * Streams test cases to a binary dataset file.
+    */
+   public static class Writer implements Closeable {
+      /** File channel. */
+      private final FileChannel channel;
+      /** Write buffer. */
+      private final ByteBuffer buffer;
+      /** Number of inputs per test case. */
+      private final int numInputs;
+      /** Number of outputs per test case. */
+      private final int numOutputs;
+      /** Number of records written. */
+      private long count = 0;
+
+      /**
+       * Constructor.
+       * Creates or truncates the file and writes a provisional header.
+       * @param path file to write to
+       * @param numInputs number of inputs per test case
+       * @param numOutputs number of outputs per test case
+       * @throws IOException if the file cannot be written
+       */
+      public Writer(Path path, int numInputs, int numOutputs)
+            throws IOException {
+         this.numInputs = numInputs;
+         this.numOutputs = numOutputs;
+         this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+         this.buffer = ByteBuffer.allocateDirect(kWriteBufferSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+         buffer.putInt(kMagic);
+         buffer.putInt(kVersion);
+         buffer.putInt(numInputs);
+         buffer.putInt(numOutputs);
+         buffer.putLong(0);
+      }
+
+      /**
+       * Writes a test case.
+       * @param test test case
+       * @throws IOException if the file cannot be written
+       */
+      public void write(TestCase test) throws IOException {
+         if (test.inputs.length != numInputs ||
+             test.outputs.length != numOutputs)
+            throw new IllegalArgumentException("Test case has improper size!");
+
+         writeDoubles(test.inputs);
+         writeDoubles(test.outputs);
+         ++count;
+      }
+
+      /**
+       * Flushes remaining records, fills in the record count and closes
+       * the file.
+       * @throws IOException if the file cannot be written
+       */
+      public void close() throws IOException {
+         try {
+            flush();
+
+            ByteBuffer countBuffer =
+               ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            countBuffer.putLong(count).flip();
+            channel.write(countBuffer, 16);
+         } finally {
+            channel.close();
+         }
+      }
+
+      /**
+       * Buffers doubles for writing.
+       * @param values values to write
+       * @throws IOException if the file cannot be written
+       */
+      private void writeDoubles(double[] values) throws IOException {
+         for (int i = 0; i < values.length; ++i) {
+            if (buffer.remaining() < 8) flush();
+            buffer.putDouble(values[i]);
+         }
+      }
+
+      /**
+       * Writes out and clears the buffer.
+       * @throws IOException if the file cannot be written
+       */
+      private void flush() throws IOException {
+         buffer.flip();
+         while (buffer.hasRemaining()) {
+            channel.write(buffer);
+         }
+         buffer.clear();
+      }
+   }
+}
@@ -0,0 +1,79 @@
+package network;
+
+/**
+ * Prints training progress to standard output.
+ * Epochs are printed only when the test error or percentage correct
+ * changes.
+ */
+public class ConsoleListener implements TrainingListener {
+   /** Test error of the previous epoch. */
+   private double prevTestError = 10000.0;
+   /** Percentage correct of the previous epoch. */
+   private double prevPercentCorrect = 0;
+
+   /**
+    * Prints the error and percentage correct before learning.
+    * @param network network being trained
+    * @param evaluation evaluation of the network before learning
+    */
+   public void trainingStarted(Network network, Evaluation evaluation) {
+      System.out.println("Total test error before learning: " +
+         evaluation.getTestError());
+      System.out.println("Passing percentage: %" +
+         evaluation.getPercentCorrect());
+   }
+
+   /**
+    * Prints the epoch's error and percentage correct if either changed.
+    * @param stats epoch statistics
+    */
+   public void epochCompleted(EpochStats stats) {
+      double testError = stats.getTestError();
+      double percentCorrect = stats.getPercentCorrect();
+
+      // Skip epochs that made no progress.
+      if (!((Double.compare(testError, 100) != 0 &&
+             Double.compare(testError, prevTestError) == 0) ||
+            Double.compare(percentCorrect, prevPercentCorrect) == 0)) {
+         System.out.printf("Percent Correct: %.6f%%  |  ", percentCorrect);
+         System.out.printf("Test error: %.6f\n", testError);
+      }
+      prevTestError = testError;
+      prevPercentCorrect = percentCorrect;
+   }
+
+   /**
+    * Prints a reset banner.
+    * @param epoch epoch after which the network was reset
+    */
+   public void networkReset(int epoch) {
+      System.out.println("====================");
+      System.out.println("Resetting network...");
+      System.out.println("====================");
+   }
+
+   /**
+    * Prints the epoch and best validation error of an early stop.
+    * @param epoch last epoch
+    * @param bestValidationError best validation error seen
+    */
+   public void earlyStopped(int epoch, double bestValidationError) {
+      System.out.println("Validation error stopped improving after epoch " +
+         epoch + "; best validation error: " + bestValidationError);
+   }
+
+   /**
+    * Prints the final error, percentage correct and network.
+    * @param network trained network
+    * @param evaluation evaluation of the trained network
+    */
+   public void trainingFinished(Network network, Evaluation evaluation) {
+      System.out.println("Total test error after learning: " +
+         evaluation.getTestError());
+      System.out.println("Passing percentage: %" +
+         evaluation.getPercentCorrect());
+      System.out.println();
+
+      System.out.println(network);
+   }
+}
@@ -0,0 +1,223 @@
+package network;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a dataset streamed from a CSV file.
+ * Each line holds a test case's inputs followed by its expected outputs,
+ * separated by commas. Blank lines and lines starting with '#' are
+ * skipped. Passes map the file a chunk at a time, so the file may be much
+ * larger than the heap.
+ */
+public class CsvDataset implements Dataset {
+   /** Approximate number of bytes mapped at a time. */
+   private static final int kChunkSize = 1 << 24;
+
+   /** Dataset file. */
+   private final Path path;
+
+   /** Number of inputs per test case. */
+   private final int numInputs;
+   /** Number of outputs per test case. */
+   private final int numOutputs;
+
+   /**
+    * Constructor.
+    * @param path dataset file
+    * @param numInputs number of inputs per test case
+    * @param numOutputs number of outputs per test case
+    */
+   public CsvDataset(Path path, int numInputs, int numOutputs) {
+      this.path = path;
+      this.numInputs = numInputs;
+      this.numOutputs = numOutputs;
+   }
+
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs
+    */
+   public int getNumInputs() {
+      return numInputs;
+   }
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs
+    */
+   public int getNumOutputs() {
+      return numOutputs;
+   }
+
+   /**
+    * Opens a pass over the file.
+    * @return reader positioned at the first test case
+    */
+   public DatasetReader open() {
+      try {
+         return new Reader();
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Reads a pass over the file through a sliding mapped window.
+    */
+   private class Reader implements DatasetReader {
+      /** File channel. */
+      private final FileChannel channel;
+      /** File size. */
+      private final long fileSize;
+      /** Reused test case. */
+      private final TestCase sample;
+      /** Reused buffer for a single value. */
+      private final StringBuilder token = new StringBuilder();
+
+      /** Currently mapped window. */
+      private MappedByteBuffer window;
+      /** File offset of the window. */
+      private long windowStart = 0;
+      /** Size of windows to map. */
+      private long windowSize = kChunkSize;
+      /** Current line number, for error messages. */
+      private long lineNumber = 0;
+
+      /**
+       * Constructor.
+       * @throws IOException if the file cannot be opened
+       */
+      Reader() throws IOException {
+         channel = FileChannel.open(path, StandardOpenOption.READ);
+         fileSize = channel.size();
+         sample = new TestCase(new double[numInputs], new double[numOutputs]);
+         map(0);
+      }
+
+      /**
+       * Reads the next test case.
+       * @return next test case (reused), or null at the end of the pass
+       */
+      public TestCase next() {
+         while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) return null;
+
+            int lineStart = window.position();
+            window.position(Math.min(lineEnd + 1, window.limit()));
+            ++lineNumber;
+
+            if (parseLine(lineStart, lineEnd)) return sample;
+         }
+      }
+
+      /**
+       * Finds the end of the line at the window position, sliding or
+       * growing the window if the line extends past it.
+       * @return window index of the line's end, or -1 at end of file
+       */
+      private int findLineEnd() {
+         while (true) {
+            int limit = window.limit();
+            for (int i = window.position(); i < limit; ++i) {
+               if (window.get(i) == '\n') return i;
+            }
+
+            long lineStart = windowStart + window.position();
+            if (windowStart + limit >= fileSize) {
+               // Last line without a newline.
+               return (window.position() < limit) ? limit : -1;
+            }
+
+            // Line extends past the window; remap from its start, growing
+            //   the window if the line alone fills it.
+            if (window.position() == 0) windowSize *= 2;
+            map(lineStart);
+         }
+      }
+
+      /**
+       * Parses a line into the sample.
+       * @param start window index of the line's start
+       * @param end window index of the line's end
+       * @return whether the line held a test case
+       */
+      private boolean parseLine(int start, int end) {
+         // Skip blank and comment lines.
+         int first = start;
+         while (first < end && Character.isWhitespace(window.get(first))) {
+            ++first;
+         }
+         if (first == end || window.get(first) == '#') return false;
+
+         int column = 0;
+         token.setLength(0);
+         for (int i = first; i <= end; ++i) {
+            char c = (i < end) ? (char) window.get(i) : ',';
+            if (c == ',') {
+               setValue(column++, token);
+               token.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+               token.append(c);
+            }
+         }
+
+         if (column != numInputs + numOutputs)
+            throw new RuntimeException(
+               "CSV line " + lineNumber + " has improper size!");
+         return true;
+      }
+
+      /**
+       * Sets a column of the sample.
+       * @param column column index
+       * @param value column text
+       */
+      private void setValue(int column, StringBuilder value) {
+         if (column >= numInputs + numOutputs) return;
+         double parsed;
+         try {
+            parsed = Double.parseDouble(value.toString());
+         } catch (NumberFormatException e) {
+            throw new RuntimeException(
+               "CSV line " + lineNumber + " has invalid value!", e);
+         }
+
+         if (column < numInputs) {
+            sample.inputs[column] = parsed;
+         } else {
+            sample.outputs[column - numInputs] = parsed;
+         }
+      }
+
+      /**
+       * Maps a window of the file.
+       * @param start file offset of the window
+       */
+      private void map(long start) {
+         try {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+               Math.min(windowSize, fileSize - start));
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+
+      /**
+       * Closes the file.
+       */
+      public void close() {
+         try {
+            channel.close();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+}
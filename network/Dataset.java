@@ -0,0 +1,26 @@
+package network;
+
+/**
+ * Represents a suite of test cases that can be read in sequential passes.
+ * Datasets need not fit in memory; each pass streams its test cases.
+ */
+public interface Dataset {
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs
+    */
+   int getNumInputs();
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs
+    */
+   int getNumOutputs();
+
+   /**
+    * Opens a pass over the dataset.
+    * Passes may be opened concurrently, each from its own thread.
+    * @return reader positioned at the first test case
+    */
+   DatasetReader open();
+}
@@ -0,0 +1,21 @@
+package network;
+
+import java.io.Closeable;
+
+/**
+ * Reads a single sequential pass over a dataset.
+ */
+public interface DatasetReader extends Closeable {
+   /**
+    * Reads the next test case.
+    * The returned test case may be reused by the next call, so callers
+    * that keep it must copy it.
+    * @return next test case, or null at the end of the pass
+    */
+   TestCase next();
+
+   /**
+    * Closes the reader, releasing any file resources.
+    */
+   void close();
+}
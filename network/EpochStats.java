@@ -0,0 +1,142 @@
+package network;
+
+/**
+ * Holds the statistics of one training epoch.
+ */
+public class EpochStats {
+   /** Epoch number, starting from one. */
+   private final int epoch;
+   /** Number of test cases in the epoch. */
+   private final long samples;
+   /** Time spent learning, in nanoseconds. */
+   private final long learnNanos;
+   /** Time for the whole epoch including evaluation, in nanoseconds. */
+   private final long wallNanos;
+   /** Bytes allocated by the training thread, or -1 if unavailable. */
+   private final long allocatedBytes;
+   /** Total test error. */
+   private final double testError;
+   /** Percentage of test cases passed. */
+   private final double percentCorrect;
+   /** Validation error, or NaN if validation was not checked. */
+   private final double validationError;
+   /** Per-layer timings, or null if timing is disabled. */
+   private final LayerTimings timings;
+
+   /**
+    * Constructor.
+    * @param epoch epoch number
+    * @param samples number of test cases in the epoch
+    * @param learnNanos time spent learning
+    * @param wallNanos time for the whole epoch
+    * @param allocatedBytes bytes allocated, or -1
+    * @param testError total test error
+    * @param percentCorrect percentage of test cases passed
+    * @param validationError validation error, or NaN
+    * @param timings per-layer timings, or null
+    */
+   EpochStats(int epoch, long samples, long learnNanos, long wallNanos,
+              long allocatedBytes, double testError, double percentCorrect,
+              double validationError, LayerTimings timings) {
+      this.epoch = epoch;
+      this.samples = samples;
+      this.learnNanos = learnNanos;
+      this.wallNanos = wallNanos;
+      this.allocatedBytes = allocatedBytes;
+      this.testError = testError;
+      this.percentCorrect = percentCorrect;
+      this.validationError = validationError;
+      this.timings = timings;
+   }
+
+   /**
+    * Getter for epoch number.
+    * @return epoch number, starting from one
+    */
+   public int getEpoch() {
+      return epoch;
+   }
+
+   /**
+    * Getter for number of test cases.
+    * @return number of test cases in the epoch
+    */
+   public long getSamples() {
+      return samples;
+   }
+
+   /**
+    * Getter for learning time.
+    * @return time spent learning, in nanoseconds
+    */
+   public long getLearnNanos() {
+      return learnNanos;
+   }
+
+   /**
+    * Getter for wall time.
+    * @return time for the whole epoch including evaluation, in nanoseconds
+    */
+   public long getWallNanos() {
+      return wallNanos;
+   }
+
+   /**
+    * Gets the learning throughput.
+    * @return test cases learned per second
+    */
+   public double getSamplesPerSecond() {
+      return (learnNanos == 0) ? 0.0 : samples * 1e9 / learnNanos;
+   }
+
+   /**
+    * Getter for allocated bytes.
+    * @return bytes allocated by the training thread, or -1 if unavailable
+    */
+   public long getAllocatedBytes() {
+      return allocatedBytes;
+   }
+
+   /**
+    * Getter for test error.
+    * @return total test error
+    */
+   public double getTestError() {
+      return testError;
+   }
+
+   /**
+    * Getter for percentage correct.
+    * @return percentage of test cases passed
+    */
+   public double getPercentCorrect() {
+      return percentCorrect;
+   }
+
+   /**
+    * Getter for validation error.
+    * @return validation error, or NaN if validation was not checked
+    */
+   public double getValidationError() {
+      return validationError;
+   }
+
+   /**
+    * Getter for per-layer timings.
+    * Only gathered when learning on the training thread.
+    * @return timings, or null if timing is disabled
+    */
+   public LayerTimings getTimings() {
+      return timings;
+   }
+
+   /**
+    * Returns a string representation of these statistics.
+    * @return string representation
+    */
+   public String toString() {
+      return String.format("Epoch %d: %.6f%% correct, error %.6f, " +
+         "%.1fms, %.0f samples/s, %d bytes", epoch, percentCorrect,
+         testError, wallNanos / 1e6, getSamplesPerSecond(), allocatedBytes);
+   }
+}
@@ -0,0 +1,176 @@
+package network;
+
+/**
+ * Accumulates test error, accuracy and per-class statistics from network
+ * outputs in a single pass.
+ * The class of a test case is the index of its largest expected output,
+ * and the test error is the total of a loss function, squared error unless
+ * the evaluation is created for a network's loss.
+ */
+public class Evaluation {
+   /** Number of outputs per test case. */
+   private final int numOutputs;
+
+   /** Loss function summed into the test error. */
+   private final Loss loss;
+   /** Output layer activation, for losses that depend on it. */
+   private final Activation activation;
+
+   /** Total test error (sum of each test case's loss). */
+   private double testError;
+   /** Number of test cases evaluated. */
+   private int total;
+   /** Number of test cases passed. */
+   private int correct;
+
+   /** Number of test cases evaluated per class. */
+   private final int[] classTotals;
+   /** Number of test cases passed per class. */
+   private final int[] classCorrect;
+
+   /**
+    * Constructor.
+    * The test error is the total squared error.
+    * @param numOutputs number of outputs per test case
+    */
+   public Evaluation(int numOutputs) {
+      this(numOutputs, Loss.kSquaredError, null);
+   }
+
+   /**
+    * Loss constructor.
+    * @param numOutputs number of outputs per test case
+    * @param loss loss function summed into the test error
+    * @param activation output layer activation
+    */
+   public Evaluation(int numOutputs, Loss loss, Activation activation) {
+      this.numOutputs = numOutputs;
+      this.loss = loss;
+      this.activation = activation;
+      this.classTotals = new int[numOutputs];
+      this.classCorrect = new int[numOutputs];
+   }
+
+   /**
+    * Adds a network output to the evaluation.
+    * @param output array containing network output
+    * @param offset offset of the output within the array
+    * @param expected expected output
+    */
+   public void add(double[] output, int offset, double[] expected) {
+      add(output, offset, expected, 0);
+   }
+
+   /**
+    * Adds a network output to the evaluation.
+    * @param output array containing network output
+    * @param offset offset of the output within the array
+    * @param expected array containing expected output
+    * @param expectedOffset offset of the expected output within the array
+    */
+   public void add(double[] output, int offset,
+                   double[] expected, int expectedOffset) {
+      int outputMaxIndex = 0;
+      double outputMax = output[offset];
+
+      int answerMaxIndex = 0;
+      double answerMax = expected[expectedOffset];
+
+      for (int j = 0; j < numOutputs; ++j) {
+         double out = output[offset + j];
+         double ans = expected[expectedOffset + j];
+
+         // Track guessed and expected classes.
+         if (out > outputMax) {
+            outputMax = out;
+            outputMaxIndex = j;
+         }
+         if (ans > answerMax) {
+            answerMax = ans;
+            answerMaxIndex = j;
+         }
+      }
+
+      testError += loss.calculate(output, offset, expected, expectedOffset,
+                                  numOutputs, activation);
+
+      ++total;
+      ++classTotals[answerMaxIndex];
+      if (outputMaxIndex == answerMaxIndex) {
+         ++correct;
+         ++classCorrect[answerMaxIndex];
+      }
+   }
+
+   /**
+    * Clears the evaluation.
+    */
+   public void clear() {
+      testError = 0.0;
+      total = 0;
+      correct = 0;
+      for (int i = 0; i < numOutputs; ++i) {
+         classTotals[i] = 0;
+         classCorrect[i] = 0;
+      }
+   }
+
+   /**
+    * Getter for total test error.
+    * @return total test error
+    */
+   public double getTestError() {
+      return testError;
+   }
+
+   /**
+    * Gets the percentage of test cases passed.
+    * @return percentage passed
+    */
+   public double getPercentCorrect() {
+      return (total == 0) ? 0.0 : 100.0 * (double) correct / total;
+   }
+
+   /**
+    * Getter for number of test cases evaluated.
+    * @return number of test cases
+    */
+   public int getTotal() {
+      return total;
+   }
+
+   /**
+    * Gets the number of test cases evaluated for a class.
+    * @param classIndex class index
+    * @return number of test cases
+    */
+   public int getClassTotal(int classIndex) {
+      return classTotals[classIndex];
+   }
+
+   /**
+    * Gets the percentage of test cases passed for a class.
+    * @param classIndex class index
+    * @return percentage passed
+    */
+   public double getClassPercentCorrect(int classIndex) {
+      return (classTotals[classIndex] == 0)
+         ? 0.0
+         : 100.0 * (double) classCorrect[classIndex] / classTotals[classIndex];
+   }
+
+   /**
+    * Returns a string representation of this evaluation.
+    * @return string representation
+    */
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("Test error: %.6f  |  Percent correct: %.6f%%\n",
+         testError, getPercentCorrect()));
+      for (int i = 0; i < numOutputs; ++i) {
+         sb.append(String.format("  Class %d: %d tests, %.6f%% correct\n",
+            i, classTotals[i], getClassPercentCorrect(i)));
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,255 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Represents a neural network with single-precision weights and
+ * activations.
+ * Firing and learning run in float; sums may optionally be accumulated in
+ * double for wide layers. fireFloat, learn and evaluate reuse buffers
+ * owned by the network, so they must not be called from multiple threads
+ * at once. fire allocates its own buffers, so like other models the
+ * network may be fired from any number of threads while it is not being
+ * taught.
+ */
+public class FloatNetwork implements Model {
+   /** Layer sizes. */
+   private final int[] layerSizes;
+
+   /** Network layers. */
+   private final ArrayList<FloatLayer> layers;
+
+   /** Learning constant. */
+   private float learningConstant = 0.1f;
+
+   /** Whether dot products are accumulated in double precision. */
+   private boolean doubleAccumulation = false;
+
+   /** Network input, converted to float. */
+   private final float[] input;
+   /** Output signals of each layer. */
+   private final float[][] activations;
+   /** Backpropagated errors of each layer. */
+   private final float[][] errors;
+
+   /**
+    * Constructor.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    */
+   public FloatNetwork(int[] layerSizes) {
+      this(layerSizes, new Random());
+   }
+
+   /**
+    * Seeded constructor.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param seed random seed for weight initialization
+    */
+   public FloatNetwork(int[] layerSizes, long seed) {
+      this(layerSizes, new Random(seed));
+   }
+
+   /**
+    * Random constructor.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param random random number generator for weight initialization
+    */
+   private FloatNetwork(int[] layerSizes, Random random) {
+      this.layerSizes = layerSizes;
+      this.layers = new ArrayList<FloatLayer>();
+      for (int i = 1; i < layerSizes.length; ++i) {
+         layers.add(new FloatLayer(layerSizes[i-1], layerSizes[i], random));
+      }
+
+      this.input = new float[layerSizes[0]];
+      this.activations = new float[layers.size()][];
+      this.errors = new float[layers.size()][];
+      for (int i = 0; i < layers.size(); ++i) {
+         activations[i] = new float[layerSizes[i + 1]];
+         errors[i] = new float[layerSizes[i + 1]];
+      }
+   }
+
+   /**
+    * Converts a double-precision network to single precision.
+    * @param network network to convert
+    * @return single-precision network
+    */
+   public static FloatNetwork fromNetwork(Network network) {
+      FloatNetwork converted =
+         new FloatNetwork(network.getLayerSizes(), new Random(0));
+      for (int i = 0; i < network.getNumLayers(); ++i) {
+         converted.layers.set(i, new FloatLayer(network.getLayer(i)));
+      }
+      converted.learningConstant = (float) network.getLearningConstant();
+      return converted;
+   }
+
+   /**
+    * Converts this network to double precision.
+    * Like networks converted to single precision, the result resets from
+    * a fixed seed.
+    * @return double-precision network
+    */
+   public Network toNetwork() {
+      ArrayList<Layer> converted = new ArrayList<Layer>();
+      for (int i = 0; i < layers.size(); ++i) {
+         converted.add(layers.get(i).toLayer());
+      }
+      Network network = new Network(layerSizes, converted, 0);
+      network.setLearningConstant(learningConstant);
+      return network;
+   }
+
+   /**
+    * Sets the learning constant.
+    * @param learningConstant new learning constant
+    */
+   public void setLearningConstant(double learningConstant) {
+      this.learningConstant = (float) learningConstant;
+   }
+
+   /**
+    * Sets whether dot products are accumulated in double precision.
+    * Weights and activations stay in float either way.
+    * @param doubleAccumulation whether to sum in double precision
+    */
+   public void setDoubleAccumulation(boolean doubleAccumulation) {
+      this.doubleAccumulation = doubleAccumulation;
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes;
+   }
+
+   /**
+    * Gets a neuron layer.
+    * @param layerIndex layer index
+    * @return layer
+    */
+   public FloatLayer getLayer(int layerIndex) {
+      return layers.get(layerIndex);
+   }
+
+   /**
+    * Fires the neural network and returns output.
+    * Allocates its buffers, so it may be called from any thread.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      float[][] buffers = new float[layers.size()][];
+      for (int i = 0; i < buffers.length; ++i) {
+         buffers[i] = new float[layerSizes[i + 1]];
+      }
+      float[] output = fireFloat(input, new float[layerSizes[0]], buffers);
+      double[] result = new double[output.length];
+      for (int i = 0; i < output.length; ++i) {
+         result[i] = output[i];
+      }
+      return result;
+   }
+
+   /**
+    * Fires the neural network in single precision.
+    * Does not allocate; the returned array is overwritten by the next pass.
+    * @param input input signals
+    * @return output signals
+    */
+   public float[] fireFloat(double[] input) {
+      return fireFloat(input, this.input, activations);
+   }
+
+   /**
+    * Fires the neural network in single precision into given buffers.
+    * @param input input signals
+    * @param converted buffer to receive the input converted to float
+    * @param outputs buffer to receive the output signals of each layer
+    * @return output signals
+    */
+   private float[] fireFloat(double[] input, float[] converted,
+                             float[][] outputs) {
+      // Validate input size.
+      if (input.length != layerSizes[0])
+         throw new RuntimeException("Network fired with improper input!");
+
+      // Convert input once.
+      for (int i = 0; i < input.length; ++i) {
+         converted[i] = (float) input[i];
+      }
+
+      // Thread input through network layers.
+      float[] signal = converted;
+      for (int i = 0; i < layers.size(); ++i) {
+         layers.get(i).fire(signal, outputs[i], doubleAccumulation);
+         signal = outputs[i];
+      }
+      return signal;
+   }
+
+   /**
+    * Teaches the network using a test case.
+    * Each layer's errors are backpropagated before its weights are
+    * updated, so no gradient buffers are needed.
+    * Does not allocate.
+    * @param test test case
+    */
+   public void learn(TestCase test) {
+      float[] output = fireFloat(test.inputs);
+
+      // Calculate error for output layer.
+      int lastIndex = layers.size() - 1;
+      float[] outErrors = errors[lastIndex];
+      for (int i = 0; i < output.length; ++i) {
+         outErrors[i] = output[i] *
+                        (1 - output[i]) *
+                        ((float) test.outputs[i] - output[i]);
+      }
+
+      // Backpropagate through layers.
+      for (int layerIndex = lastIndex; layerIndex >= 0; --layerIndex) {
+         float[] layerInput = (layerIndex > 0)
+            ? activations[layerIndex - 1]
+            : input;
+         FloatLayer layer = layers.get(layerIndex);
+
+         // Calculate hidden layer errors from the weights before update.
+         if (layerIndex > 0) {
+            float[] newErrors = errors[layerIndex - 1];
+            layer.backpropagate(errors[layerIndex], newErrors);
+            for (int p = 0; p < newErrors.length; ++p) {
+               newErrors[p] *= layerInput[p] * (1 - layerInput[p]);
+            }
+         }
+
+         layer.update(errors[layerIndex], layerInput, learningConstant);
+      }
+   }
+
+   /**
+    * Evaluates the network on a dataset.
+    * @param dataset test dataset
+    * @param evaluation evaluation to add results to
+    */
+   public void evaluate(Dataset dataset, Evaluation evaluation) {
+      double[] output = new double[layerSizes[layerSizes.length - 1]];
+      DatasetReader reader = dataset.open();
+      try {
+         TestCase test;
+         while ((test = reader.next()) != null) {
+            float[] result = fireFloat(test.inputs);
+            for (int i = 0; i < output.length; ++i) {
+               output[i] = result[i];
+            }
+            evaluation.add(output, 0, test.outputs);
+         }
+      } finally {
+         reader.close();
+      }
+   }
+}
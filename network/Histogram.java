@@ -0,0 +1,126 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records non-negative values, such as latencies in nanoseconds, in
+ * log-linear buckets for percentile reporting.
+ * Each power of two is split into eight buckets, so reported percentiles
+ * are within 12.5% of the true value. Recording is lock-free and does not
+ * allocate, so any number of threads may record at once.
+ */
+public class Histogram {
+   /** Number of buckets per power of two. */
+   private static final int kSubBuckets = 8;
+   /** Bits of the sub-bucket index. */
+   private static final int kSubBucketBits = 3;
+   /** Number of buckets, covering all non-negative longs. */
+   private static final int kNumBuckets = kSubBuckets * (64 - kSubBucketBits);
+
+   /** Count of each bucket. */
+   private final AtomicLongArray counts = new AtomicLongArray(kNumBuckets);
+   /** Total count. */
+   private final AtomicLong total = new AtomicLong();
+   /** Sum of recorded values. */
+   private final AtomicLong sum = new AtomicLong();
+   /** Largest recorded value. */
+   private final AtomicLong max = new AtomicLong();
+
+   /**
+    * Records a value.
+    * @param value non-negative value, typically in nanoseconds
+    */
+   public void record(long value) {
+      if (value < 0) value = 0;
+      counts.incrementAndGet(bucket(value));
+      total.incrementAndGet();
+      sum.addAndGet(value);
+
+      long previous;
+      while (value > (previous = max.get()) &&
+             !max.compareAndSet(previous, value)) { }
+   }
+
+   /**
+    * Gets the number of recorded values.
+    * @return count
+    */
+   public long getCount() {
+      return total.get();
+   }
+
+   /**
+    * Gets the mean recorded value.
+    * @return mean, or 0 if nothing was recorded
+    */
+   public double getMean() {
+      long count = total.get();
+      return (count == 0) ? 0.0 : (double) sum.get() / count;
+   }
+
+   /**
+    * Gets the largest recorded value.
+    * @return maximum, or 0 if nothing was recorded
+    */
+   public long getMax() {
+      return max.get();
+   }
+
+   /**
+    * Estimates a percentile.
+    * Returns the upper bound of the bucket holding the percentile.
+    * @param percentile percentile between 0 and 100
+    * @return estimated value, or 0 if nothing was recorded
+    */
+   public long getPercentile(double percentile) {
+      long count = total.get();
+      if (count == 0) return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < kNumBuckets; ++i) {
+         seen += counts.get(i);
+         if (seen >= rank) return Math.min(upperBound(i), max.get());
+      }
+      return max.get();
+   }
+
+   /**
+    * Clears all recorded values.
+    * Values recorded concurrently with a clear may be partially kept.
+    */
+   public void clear() {
+      for (int i = 0; i < kNumBuckets; ++i) {
+         counts.set(i, 0);
+      }
+      total.set(0);
+      sum.set(0);
+      max.set(0);
+   }
+
+   /**
+    * Gets the bucket of a value.
+    * @param value non-negative value
+    * @return bucket index
+    */
+   private static int bucket(long value) {
+      if (value < kSubBuckets) return (int) value;
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int shift = exponent - kSubBucketBits;
+      int sub = (int) (value >>> shift) & (kSubBuckets - 1);
+      return kSubBuckets * (shift + 1) + sub;
+   }
+
+   /**
+    * Gets the largest value held by a bucket.
+    * @param bucket bucket index
+    * @return upper bound
+    */
+   private static long upperBound(int bucket) {
+      if (bucket < kSubBuckets) return bucket;
+      int shift = bucket / kSubBuckets - 1;
+      int sub = bucket % kSubBuckets;
+      return ((long) (kSubBuckets + sub + 1) << shift) - 1;
+   }
+}
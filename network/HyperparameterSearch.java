@@ -0,0 +1,484 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches over network topologies, learning constants and batch sizes by
+ * successive halving.
+ * Every configuration trains for a few epochs, the best fraction of them
+ * by validation accuracy are promoted to train for a multiple of that
+ * budget, and so on until the largest budget is reached, so poor
+ * configurations are stopped early and most epochs go to promising ones.
+ * Configurations in each round train at once on a bounded worker pool.
+ * Networks are seeded from their configuration index, so the ranking does
+ * not depend on the number of threads; only the timings do.
+ */
+public class HyperparameterSearch {
+   /** Default number of epochs in the first round. */
+   private static final int kDefaultMinEpochs = 1;
+
+   /** Default number of epochs for configurations that reach the end. */
+   private static final int kDefaultMaxEpochs = 27;
+
+   /** Default ratio between the budgets of consecutive rounds. */
+   private static final int kDefaultReduction = 3;
+
+   /** Default validation accuracy timed to, in percent. */
+   private static final double kDefaultTargetPercentCorrect = 90;
+
+   /**
+    * Ranks configurations by the last round reached, then by validation
+    * accuracy, then by validation error.
+    */
+   private static final Comparator<Trial> kRanking = new Comparator<Trial>() {
+      public int compare(Trial a, Trial b) {
+         if (a.round != b.round) return Integer.compare(b.round, a.round);
+         if (a.percentCorrect != b.percentCorrect) {
+            return Double.compare(b.percentCorrect, a.percentCorrect);
+         }
+         return Double.compare(a.testError, b.testError);
+      }
+   };
+
+   /**
+    * Holds a configuration and its training progress.
+    */
+   public static class Trial {
+      /** Number of neurons per layer (index 0 is input size). */
+      private final int[] layerSizes;
+      /** Learning constant. */
+      private final double learningConstant;
+      /** Number of test cases per gradient update. */
+      private final int batchSize;
+      /** Seed for the network's initial weights. */
+      private final long seed;
+
+      /** Network being trained, or null once the trial has stopped. */
+      private Network network;
+      /** Trainer holding the batch size. */
+      private Trainer trainer;
+      /** Workspace to learn in. */
+      private Workspace workspace;
+
+      /** Number of epochs trained. */
+      private int epochs;
+      /** Number of rounds the trial was promoted through. */
+      private int round;
+      /** Time spent learning, in nanoseconds. */
+      private long learnNanos;
+      /** Validation accuracy after the last epoch. */
+      private double percentCorrect;
+      /** Validation error after the last epoch. */
+      private double testError = Double.POSITIVE_INFINITY;
+      /** Epoch the target accuracy was first reached, or 0. */
+      private int epochsToTarget;
+      /** Learning time to first reach the target accuracy, or -1. */
+      private long nanosToTarget = -1;
+
+      /**
+       * Constructor.
+       * @param layerSizes number of neurons per layer
+       * @param learningConstant learning constant
+       * @param batchSize number of test cases per gradient update
+       * @param seed seed for the network's initial weights
+       */
+      Trial(int[] layerSizes, double learningConstant, int batchSize,
+            long seed) {
+         this.layerSizes = layerSizes.clone();
+         this.learningConstant = learningConstant;
+         this.batchSize = batchSize;
+         this.seed = seed;
+      }
+
+      /**
+       * Getter for layer sizes.
+       * @return number of neurons per layer (index 0 is input size)
+       */
+      public int[] getLayerSizes() {
+         return layerSizes.clone();
+      }
+
+      /**
+       * Getter for learning constant.
+       * @return learning constant
+       */
+      public double getLearningConstant() {
+         return learningConstant;
+      }
+
+      /**
+       * Getter for batch size.
+       * @return number of test cases per gradient update
+       */
+      public int getBatchSize() {
+         return batchSize;
+      }
+
+      /**
+       * Getter for epochs trained.
+       * @return number of epochs trained before the trial stopped
+       */
+      public int getEpochs() {
+         return epochs;
+      }
+
+      /**
+       * Getter for the last round reached.
+       * @return number of rounds the trial was promoted through
+       */
+      public int getRound() {
+         return round;
+      }
+
+      /**
+       * Getter for learning time.
+       * @return time spent learning, in nanoseconds
+       */
+      public long getLearnNanos() {
+         return learnNanos;
+      }
+
+      /**
+       * Getter for validation accuracy.
+       * @return percentage of validation test cases passed after the last
+       *         epoch
+       */
+      public double getPercentCorrect() {
+         return percentCorrect;
+      }
+
+      /**
+       * Getter for validation error.
+       * @return total validation error after the last epoch
+       */
+      public double getTestError() {
+         return testError;
+      }
+
+      /**
+       * Getter for epochs to the target accuracy.
+       * @return epoch the target accuracy was first reached, or 0
+       */
+      public int getEpochsToTarget() {
+         return epochsToTarget;
+      }
+
+      /**
+       * Getter for time to the target accuracy.
+       * Only learning time is counted, not validation.
+       * @return learning time to first reach the target accuracy, in
+       *         nanoseconds, or -1 if it was never reached
+       */
+      public long getNanosToTarget() {
+         return nanosToTarget;
+      }
+
+      /**
+       * Trains the trial up to a number of epochs, validating after each.
+       * @param totalEpochs number of epochs to have trained
+       * @param validation validation dataset
+       * @param target target validation accuracy
+       */
+      private void train(int totalEpochs, Dataset validation,
+                         double target) {
+         Evaluation evaluation = network.createEvaluation();
+         while (epochs < totalEpochs) {
+            long start = System.nanoTime();
+            trainer.runEpoch(network, workspace);
+            learnNanos += System.nanoTime() - start;
+            ++epochs;
+
+            evaluation.clear();
+            network.evaluate(validation, evaluation);
+            percentCorrect = evaluation.getPercentCorrect();
+            testError = evaluation.getTestError();
+            if (nanosToTarget < 0 && percentCorrect >= target) {
+               epochsToTarget = epochs;
+               nanosToTarget = learnNanos;
+            }
+         }
+      }
+   }
+
+   /** Dataset to train with. */
+   private final Dataset dataset;
+
+   /** Dataset to rank configurations by. */
+   private final Dataset validation;
+
+   /** Configurations to search. */
+   private final ArrayList<Trial> trials = new ArrayList<Trial>();
+
+   /** Number of worker threads. */
+   private int numThreads = Runtime.getRuntime().availableProcessors();
+
+   /** Number of epochs in the first round. */
+   private int minEpochs = kDefaultMinEpochs;
+
+   /** Number of epochs for configurations that reach the end. */
+   private int maxEpochs = kDefaultMaxEpochs;
+
+   /** Ratio between the budgets of consecutive rounds. */
+   private int reduction = kDefaultReduction;
+
+   /** Validation accuracy timed to, in percent. */
+   private double targetPercentCorrect = kDefaultTargetPercentCorrect;
+
+   /** Seed for the next configuration's network. */
+   private long nextSeed = 0;
+
+   /**
+    * Constructor.
+    * Both datasets are read by several threads at once, so each must
+    * support concurrent passes; an InputPipeline does not.
+    * @param dataset dataset to train with
+    * @param validation dataset to rank configurations by
+    */
+   public HyperparameterSearch(Dataset dataset, Dataset validation) {
+      this.dataset = dataset;
+      this.validation = validation;
+   }
+
+   /**
+    * Adds a configuration to the search.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param learningConstant learning constant
+    * @param batchSize number of test cases per gradient update
+    */
+   public void addConfig(int[] layerSizes, double learningConstant,
+                         int batchSize) {
+      if (layerSizes[0] != dataset.getNumInputs() ||
+          layerSizes[layerSizes.length - 1] != dataset.getNumOutputs())
+         throw new IllegalArgumentException(
+            "Layer sizes do not match the dataset!");
+      if (learningConstant <= 0.0)
+         throw new IllegalArgumentException("Invalid learning constant!");
+      if (batchSize < 1)
+         throw new IllegalArgumentException("Invalid batch size!");
+      trials.add(new Trial(layerSizes, learningConstant, batchSize,
+                           nextSeed++));
+   }
+
+   /**
+    * Adds every combination of the given values to the search.
+    * @param layerSizes candidate topologies
+    * @param learningConstants candidate learning constants
+    * @param batchSizes candidate batch sizes
+    */
+   public void addGrid(int[][] layerSizes, double[] learningConstants,
+                       int[] batchSizes) {
+      for (int[] sizes : layerSizes) {
+         for (double learningConstant : learningConstants) {
+            for (int batchSize : batchSizes) {
+               addConfig(sizes, learningConstant, batchSize);
+            }
+         }
+      }
+   }
+
+   /**
+    * Adds randomly sampled configurations to the search.
+    * Learning constants are sampled log-uniformly from a range; topologies
+    * and batch sizes uniformly from the candidates.
+    * @param count number of configurations
+    * @param layerSizes candidate topologies
+    * @param minLearningConstant smallest learning constant
+    * @param maxLearningConstant largest learning constant
+    * @param batchSizes candidate batch sizes
+    * @param rand random number generator
+    */
+   public void addRandom(int count, int[][] layerSizes,
+                         double minLearningConstant,
+                         double maxLearningConstant, int[] batchSizes,
+                         Random rand) {
+      if (minLearningConstant <= 0.0 ||
+          maxLearningConstant < minLearningConstant)
+         throw new IllegalArgumentException("Invalid learning constants!");
+      double logMin = Math.log(minLearningConstant);
+      double logMax = Math.log(maxLearningConstant);
+      for (int i = 0; i < count; ++i) {
+         addConfig(layerSizes[rand.nextInt(layerSizes.length)],
+                   Math.exp(logMin + rand.nextDouble() * (logMax - logMin)),
+                   batchSizes[rand.nextInt(batchSizes.length)]);
+      }
+   }
+
+   /**
+    * Sets the number of worker threads.
+    * @param numThreads number of configurations trained at once
+    */
+   public void setThreads(int numThreads) {
+      if (numThreads < 1)
+         throw new IllegalArgumentException("Invalid thread count!");
+      this.numThreads = numThreads;
+   }
+
+   /**
+    * Sets the epoch budgets.
+    * Every configuration trains for the minimum number of epochs, and each
+    * round multiplies the budget by the reduction factor, up to the
+    * maximum.
+    * @param minEpochs number of epochs in the first round
+    * @param maxEpochs number of epochs for configurations that reach the
+    *                  end
+    */
+   public void setEpochs(int minEpochs, int maxEpochs) {
+      if (minEpochs < 1 || maxEpochs < minEpochs)
+         throw new IllegalArgumentException("Invalid epoch budget!");
+      this.minEpochs = minEpochs;
+      this.maxEpochs = maxEpochs;
+   }
+
+   /**
+    * Sets the reduction factor.
+    * After each round, one in this many configurations is promoted, and
+    * the promoted configurations train this many times as many epochs.
+    * @param reduction reduction factor
+    */
+   public void setReduction(int reduction) {
+      if (reduction < 2)
+         throw new IllegalArgumentException("Invalid reduction factor!");
+      this.reduction = reduction;
+   }
+
+   /**
+    * Sets the validation accuracy to report the time to.
+    * @param targetPercentCorrect target percentage of validation test
+    *                             cases passed
+    */
+   public void setTargetPercentCorrect(double targetPercentCorrect) {
+      this.targetPercentCorrect = targetPercentCorrect;
+   }
+
+   /**
+    * Sets the seed for the networks' initial weights.
+    * Configurations added afterwards use consecutive seeds.
+    * @param seed seed for the next configuration added
+    */
+   public void setSeed(long seed) {
+      this.nextSeed = seed;
+   }
+
+   /**
+    * Runs the search.
+    * @return configurations, best first
+    */
+   public ArrayList<Trial> run() {
+      if (trials.isEmpty())
+         throw new IllegalStateException("No configurations to search!");
+
+      for (Trial trial : trials) {
+         trial.network = new Network(trial.layerSizes, trial.seed);
+         trial.network.setLearningConstant(trial.learningConstant);
+         trial.workspace = trial.network.createWorkspace();
+         trial.trainer = new Trainer(dataset);
+         trial.trainer.setBatchSize(trial.batchSize);
+      }
+
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+      try {
+         ArrayList<Trial> survivors = new ArrayList<Trial>(trials);
+         int budget = minEpochs;
+         for (int round = 0; ; ++round) {
+            trainRound(pool, survivors, budget);
+            for (Trial trial : survivors) {
+               trial.round = round;
+            }
+            if (budget == maxEpochs) break;
+
+            // Promote the best of the round.
+            Collections.sort(survivors, kRanking);
+            int promoted = Math.max(1, survivors.size() / reduction);
+            for (Trial trial : survivors.subList(promoted, survivors.size())) {
+               release(trial);
+            }
+            survivors = new ArrayList<Trial>(survivors.subList(0, promoted));
+            budget = (int) Math.min((long) budget * reduction, maxEpochs);
+         }
+         for (Trial trial : survivors) {
+            release(trial);
+         }
+      } finally {
+         pool.shutdownNow();
+      }
+
+      ArrayList<Trial> ranked = new ArrayList<Trial>(trials);
+      Collections.sort(ranked, kRanking);
+      return ranked;
+   }
+
+   /**
+    * Trains each surviving configuration up to the round's budget.
+    * @param pool worker pool
+    * @param survivors configurations in the round
+    * @param budget number of epochs to have trained
+    */
+   private void trainRound(ExecutorService pool, ArrayList<Trial> survivors,
+                           final int budget) {
+      ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (final Trial trial : survivors) {
+         tasks.add(new Callable<Void>() {
+            public Void call() {
+               trial.train(budget, validation, targetPercentCorrect);
+               return null;
+            }
+         });
+      }
+
+      try {
+         for (Future<Void> future : pool.invokeAll(tasks)) {
+            future.get();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Hyperparameter search interrupted!", e);
+      } catch (ExecutionException e) {
+         throw new RuntimeException("Hyperparameter search failed!",
+                                    e.getCause());
+      }
+   }
+
+   /**
+    * Releases a stopped configuration's network.
+    * @param trial stopped configuration
+    */
+   private static void release(Trial trial) {
+      trial.network = null;
+      trial.workspace = null;
+      trial.trainer = null;
+   }
+
+   /**
+    * Formats ranked configurations as a table.
+    * @param ranked configurations, best first
+    * @return table, one configuration per line after a header
+    */
+   public String formatTable(ArrayList<Trial> ranked) {
+      StringBuilder table = new StringBuilder();
+      table.append(String.format("%4s  %-20s %9s %6s %6s %8s %12s %14s%n",
+         "rank", "layers", "rate", "batch", "epochs", "valid%", "error",
+         "to " + targetPercentCorrect + "%"));
+      for (int i = 0; i < ranked.size(); ++i) {
+         Trial trial = ranked.get(i);
+         String layers = Arrays.toString(trial.layerSizes).replace(" ", "");
+         String toTarget = (trial.nanosToTarget < 0)
+            ? "-"
+            : String.format("%.3fs @%d", trial.nanosToTarget / 1e9,
+                            trial.epochsToTarget);
+         table.append(String.format(
+            "%4d  %-20s %9.4g %6d %6d %8.2f %12.4f %14s%n",
+            i + 1, layers, trial.learningConstant, trial.batchSize,
+            trial.epochs, trial.percentCorrect, trial.testError, toTarget));
+      }
+      return table.toString();
+   }
+}
@@ -0,0 +1,238 @@
+package network;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves inference requests over a local socket.
+ * Each connection is handled on its own thread, and requests from all
+ * connections are merged into batches by a MicroBatcher.
+ *
+ * The protocol is line based. Each request line holds whitespace
+ * separated input signals, and is answered with a line of space separated
+ * output signals, or a line starting with "error:". The line "stats" is
+ * answered with the server statistics, and "quit" closes the connection.
+ */
+public class InferenceServer implements Closeable {
+   /** Batcher merging requests from all connections. */
+   private final MicroBatcher batcher;
+
+   /** Listening socket. */
+   private final ServerSocket serverSocket;
+
+   /** Executor running one task per connection. */
+   private final ExecutorService executor;
+
+   /** Thread accepting connections. */
+   private final Thread acceptor;
+
+   /** Number of open connections. */
+   private final AtomicInteger connections = new AtomicInteger();
+
+   /**
+    * Constructor.
+    * Binds to the loopback interface and starts accepting connections.
+    * @param publisher publisher of the model to serve
+    * @param port port to listen on, or 0 for any free port
+    * @param maxBatchSize maximum number of requests per batch
+    * @param maxWaitMicros maximum time a request waits for a batch to
+    *                      fill, in microseconds
+    * @throws IOException if the socket cannot be bound
+    */
+   public InferenceServer(ModelPublisher publisher, int port,
+                          int maxBatchSize, long maxWaitMicros)
+         throws IOException {
+      this.serverSocket =
+         new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+      this.batcher = new MicroBatcher(publisher, maxBatchSize, maxWaitMicros);
+      this.executor = newConnectionExecutor();
+
+      this.acceptor = new Thread(new Runnable() {
+         public void run() {
+            accept();
+         }
+      }, "inference-acceptor");
+      this.acceptor.setDaemon(true);
+      this.acceptor.start();
+   }
+
+   /**
+    * Gets the port the server is listening on.
+    * @return port
+    */
+   public int getPort() {
+      return serverSocket.getLocalPort();
+   }
+
+   /**
+    * Getter for the batcher, for detailed statistics.
+    * @return batcher
+    */
+   public MicroBatcher getBatcher() {
+      return batcher;
+   }
+
+   /**
+    * Gets a one-line summary of the server statistics.
+    * Latencies are measured from queueing to completion, in microseconds.
+    * @return statistics
+    */
+   public String getStats() {
+      Histogram latency = batcher.getLatency();
+      return String.format(
+         "connections=%d queue=%d requests=%d batch=%.1f " +
+         "p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+         connections.get(), batcher.getQueueDepth(), latency.getCount(),
+         batcher.getBatchSizes().getMean(),
+         latency.getPercentile(50) / 1000, latency.getPercentile(90) / 1000,
+         latency.getPercentile(99) / 1000, latency.getPercentile(99.9) / 1000,
+         latency.getMax() / 1000);
+   }
+
+   /**
+    * Stops the server.
+    * Open connections are closed and queued requests fail.
+    */
+   public void close() {
+      try {
+         serverSocket.close();
+      } catch (IOException e) {
+         // Already closed.
+      }
+      executor.shutdownNow();
+      batcher.shutdown();
+   }
+
+   /**
+    * Accepts connections until the socket is closed.
+    */
+   private void accept() {
+      while (!serverSocket.isClosed()) {
+         try {
+            final Socket socket = serverSocket.accept();
+            try {
+               executor.execute(new Runnable() {
+                  public void run() {
+                     serve(socket);
+                  }
+               });
+            } catch (RejectedExecutionException e) {
+               // Closed after the accept; drop the connection.
+               try {
+                  socket.close();
+               } catch (IOException closed) {
+                  // Already closed.
+               }
+               return;
+            }
+         } catch (IOException e) {
+            // Socket closed.
+         }
+      }
+   }
+
+   /**
+    * Serves requests from one connection until it is closed.
+    * @param socket connection
+    */
+   private void serve(Socket socket) {
+      connections.incrementAndGet();
+      MicroBatcher.Request request = new MicroBatcher.Request();
+      StringBuilder response = new StringBuilder();
+
+      try {
+         socket.setTcpNoDelay(true);
+         BufferedReader in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8));
+
+         String line;
+         while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.equals("quit")) break;
+
+            response.setLength(0);
+            if (line.equals("stats")) {
+               response.append(getStats());
+            } else {
+               try {
+                  request.input = parseInputs(line, request.input);
+                  batcher.fire(request);
+                  for (int i = 0; i < request.output.length; ++i) {
+                     if (i > 0) response.append(' ');
+                     response.append(request.output[i]);
+                  }
+               } catch (RuntimeException e) {
+                  response.append("error: ").append(e.getMessage());
+               }
+            }
+            out.print(response);
+            out.print('\n');
+            out.flush();
+         }
+      } catch (InterruptedException | SocketException e) {
+         // Server closed.
+      } catch (IOException e) {
+         // Connection dropped.
+      } finally {
+         connections.decrementAndGet();
+         try {
+            socket.close();
+         } catch (IOException e) {
+            // Already closed.
+         }
+      }
+   }
+
+   /**
+    * Parses a line of input signals.
+    * @param line whitespace separated input signals
+    * @param previous previous input array, reused if it has the same length
+    * @return input signals
+    */
+   private static double[] parseInputs(String line, double[] previous) {
+      String[] tokens = line.split("\\s+");
+      double[] input = (previous != null && previous.length == tokens.length)
+         ? previous
+         : new double[tokens.length];
+      try {
+         for (int i = 0; i < tokens.length; ++i) {
+            input[i] = Double.parseDouble(tokens[i]);
+         }
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid input!");
+      }
+      return input;
+   }
+
+   /**
+    * Creates the executor for connections.
+    * Uses a virtual thread per connection where the runtime supports
+    * them (Java 21 and later), and a cached pool of platform threads
+    * otherwise.
+    * @return executor
+    */
+   static ExecutorService newConnectionExecutor() {
+      try {
+         return (ExecutorService) Executors.class
+            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+         return Executors.newCachedThreadPool();
+      }
+   }
+}
@@ -0,0 +1,531 @@
+package network;
+
+import java.util.Random;
+
+/**
+ * Represents a dataset prepared ahead of the learner by producer threads.
+ * Producers shuffle packed rows or generate synthetic samples, transform
+ * them, and pack them into batches in a bounded ring buffer, so reading a
+ * pass only waits if the producers fall behind. Batches are recycled in
+ * place, so a running pipeline does not allocate. With at least two
+ * batches in the ring, producers fill one batch while the learner reads
+ * another.
+ *
+ * Each batch is prepared from a random seed derived from its position in
+ * the stream, and batches are delivered in order, so the stream is
+ * reproducible for a given seed regardless of the number of producers.
+ *
+ * Passes are taken from the stream in turn: each call to open() reads the
+ * next pass, so only one pass may be open at a time, and evaluation passes
+ * also consume the stream. A generated stream never runs out, so every
+ * pass holds fresh samples.
+ */
+public class InputPipeline implements Dataset {
+   /** Default number of test cases per batch. */
+   private static final int kDefaultBatchSize = 64;
+
+   /** Default number of batches in the ring buffer. */
+   private static final int kDefaultCapacity = 4;
+
+   /** Stride between the random seeds of consecutive batches. */
+   private static final long kSeedStride = 0x9E3779B97F4A7C15L;
+
+   /**
+    * Generates synthetic test cases.
+    */
+   public interface Generator {
+      /**
+       * Generates a test case in place.
+       * @param random random number generator
+       * @param test test case to overwrite
+       */
+      void generate(Random random, TestCase test);
+   }
+
+   /**
+    * Transforms test cases, e.g. to add noise.
+    */
+   public interface Transform {
+      /**
+       * Transforms a test case in place.
+       * The test case is a copy, so the source is never changed.
+       * @param random random number generator
+       * @param test test case to transform
+       */
+      void apply(Random random, TestCase test);
+   }
+
+   /**
+    * Holds a batch of prepared test cases.
+    */
+   private static class Batch {
+      /** Prepared test cases, reused for every batch in this slot. */
+      final TestCase[] rows;
+      /** Number of prepared test cases. */
+      int count;
+      /** Position of the batch in the stream, or -1 if not yet filled. */
+      long sequence = -1;
+
+      /**
+       * Constructor.
+       * @param size number of test cases
+       * @param numInputs number of inputs per test case
+       * @param numOutputs number of outputs per test case
+       */
+      Batch(int size, int numInputs, int numOutputs) {
+         rows = new TestCase[size];
+         for (int i = 0; i < size; ++i) {
+            rows[i] = new TestCase(new double[numInputs],
+                                   new double[numOutputs]);
+         }
+      }
+   }
+
+   /** Packed source, or null if generating. */
+   private final PackedDataset source;
+   /** Generator, or null if reading a packed source. */
+   private final Generator generator;
+
+   /** Number of inputs per test case. */
+   private final int numInputs;
+   /** Number of outputs per test case. */
+   private final int numOutputs;
+   /** Number of test cases per pass. */
+   private final int passSize;
+
+   /** Number of test cases per batch. */
+   private int batchSize = kDefaultBatchSize;
+   /** Number of producer threads. */
+   private int numProducers = 1;
+   /** Number of batches in the ring buffer. */
+   private int capacity = kDefaultCapacity;
+   /** Random seed for the stream. */
+   private long seed = System.nanoTime();
+   /** Whether each pass over a packed source is shuffled. */
+   private boolean shuffle = true;
+   /** Transform applied to each test case, or null. */
+   private Transform transform;
+
+   /** Number of batches per pass. */
+   private int numBatches;
+   /** Ring buffer of batches, or null until started. */
+   private Batch[] slots;
+   /** Producer threads. */
+   private Thread[] producers;
+   /**
+    * Shuffled row order of each pass that may be in flight, indexed by
+    * pass modulo the number of orders.
+    */
+   private int[][] orders;
+   /** Pass each order was shuffled for, or -1. */
+   private long[] orderPasses;
+   /** Random number generator for shuffling orders. */
+   private final Random orderRandom = new Random();
+
+   /** Whether producers are running. */
+   private boolean running = false;
+   /** Error thrown by a producer, or null. */
+   private RuntimeException failure;
+   /** Next stream position to be claimed by a producer. */
+   private long claimed = 0;
+   /** Number of batches released by the reader. */
+   private long consumed = 0;
+   /** Stream position of the first batch of the next pass. */
+   private long nextPass = 0;
+   /** Whether a pass is open. */
+   private boolean readerOpen = false;
+
+   /** Time the reader spent waiting for batches. */
+   private long starvedNanos = 0;
+   /** Number of batches the reader had to wait for. */
+   private long starvedBatches = 0;
+   /** Time producers spent waiting for free slots. */
+   private long blockedNanos = 0;
+
+   /**
+    * Packed source constructor.
+    * Each pass reads every row of the source once, shuffled by default.
+    * @param source packed dataset
+    */
+   public InputPipeline(PackedDataset source) {
+      if (source.size() == 0)
+         throw new IllegalArgumentException("Empty pipeline source!");
+      this.source = source;
+      this.generator = null;
+      this.numInputs = source.getNumInputs();
+      this.numOutputs = source.getNumOutputs();
+      this.passSize = source.size();
+   }
+
+   /**
+    * Generator constructor.
+    * Each pass holds a number of freshly generated test cases.
+    * @param generator test case generator
+    * @param numInputs number of inputs per test case
+    * @param numOutputs number of outputs per test case
+    * @param passSize number of test cases per pass
+    */
+   public InputPipeline(Generator generator, int numInputs, int numOutputs,
+                        int passSize) {
+      if (passSize < 1)
+         throw new IllegalArgumentException("Invalid pass size!");
+      this.source = null;
+      this.generator = generator;
+      this.numInputs = numInputs;
+      this.numOutputs = numOutputs;
+      this.passSize = passSize;
+   }
+
+   /**
+    * Sets the number of test cases per batch.
+    * @param batchSize number of test cases per batch
+    */
+   public synchronized void setBatchSize(int batchSize) {
+      checkNotStarted();
+      if (batchSize < 1)
+         throw new IllegalArgumentException("Invalid batch size!");
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Sets the number of producer threads.
+    * @param numProducers number of producer threads
+    */
+   public synchronized void setProducers(int numProducers) {
+      checkNotStarted();
+      if (numProducers < 1)
+         throw new IllegalArgumentException("Invalid producer count!");
+      this.numProducers = numProducers;
+   }
+
+   /**
+    * Sets the number of batches in the ring buffer.
+    * Two batches double-buffer the learner; more absorb uneven
+    * preparation times.
+    * @param capacity number of batches
+    */
+   public synchronized void setCapacity(int capacity) {
+      checkNotStarted();
+      if (capacity < 1)
+         throw new IllegalArgumentException("Invalid capacity!");
+      this.capacity = capacity;
+   }
+
+   /**
+    * Sets the random seed for shuffling, generating and transforming.
+    * @param seed random seed
+    */
+   public synchronized void setSeed(long seed) {
+      checkNotStarted();
+      this.seed = seed;
+   }
+
+   /**
+    * Sets whether each pass over a packed source is shuffled.
+    * Unshuffled passes read rows in storage order.
+    * @param shuffle whether to shuffle
+    */
+   public synchronized void setShuffle(boolean shuffle) {
+      checkNotStarted();
+      this.shuffle = shuffle;
+   }
+
+   /**
+    * Sets a transform applied to each test case as it is prepared.
+    * @param transform transform, or null for none
+    */
+   public synchronized void setTransform(Transform transform) {
+      checkNotStarted();
+      this.transform = transform;
+   }
+
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs
+    */
+   public int getNumInputs() {
+      return numInputs;
+   }
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs
+    */
+   public int getNumOutputs() {
+      return numOutputs;
+   }
+
+   /**
+    * Gets the number of test cases per pass.
+    * @return pass size
+    */
+   public int getPassSize() {
+      return passSize;
+   }
+
+   /**
+    * Gets the time the reader has spent waiting for prepared batches.
+    * @return wait time in nanoseconds
+    */
+   public synchronized long getStarvedNanos() {
+      return starvedNanos;
+   }
+
+   /**
+    * Gets the number of batches the reader had to wait for.
+    * @return number of batches
+    */
+   public synchronized long getStarvedBatches() {
+      return starvedBatches;
+   }
+
+   /**
+    * Gets the time producers have spent waiting for the reader to free a
+    * slot in the ring buffer.
+    * @return wait time in nanoseconds, summed over producers
+    */
+   public synchronized long getBlockedNanos() {
+      return blockedNanos;
+   }
+
+   /**
+    * Opens the next pass of the stream, starting the producers on first
+    * use.
+    * Closing the reader early skips the rest of its pass.
+    * @return reader positioned at the first test case of the pass
+    */
+   public DatasetReader open() {
+      final long first;
+      synchronized (this) {
+         if (readerOpen)
+            throw new IllegalStateException("A pipeline pass is already open!");
+         if (slots == null) start();
+         if (!running)
+            throw new IllegalStateException("Pipeline has been shut down!");
+         readerOpen = true;
+         first = nextPass;
+         nextPass += numBatches;
+      }
+      final long end = first + numBatches;
+
+      return new DatasetReader() {
+         /** Stream position of the current batch. */
+         private long sequence = first;
+         /** Current batch, or null. */
+         private Batch batch;
+         /** Index of the next test case in the batch. */
+         private int row;
+         /** Whether the reader has been closed. */
+         private boolean closed = false;
+
+         public TestCase next() {
+            if (batch != null && row < batch.count) return batch.rows[row++];
+
+            // Release the finished batch and take the next one.
+            if (batch != null) {
+               release(sequence++);
+               batch = null;
+            }
+            if (sequence == end) return null;
+            batch = take(sequence);
+            row = 0;
+            return batch.rows[row++];
+         }
+
+         public void close() {
+            if (closed) return;
+            closed = true;
+
+            // Skip the rest of the pass so the next one starts in place.
+            if (batch != null) {
+               release(sequence++);
+               batch = null;
+            }
+            while (running && sequence < end) {
+               take(sequence);
+               release(sequence++);
+            }
+            synchronized (InputPipeline.this) {
+               readerOpen = false;
+            }
+         }
+      };
+   }
+
+   /**
+    * Stops the producer threads.
+    * Readers waiting for batches fail with an exception.
+    */
+   public synchronized void shutdown() {
+      running = false;
+      notifyAll();
+   }
+
+   /**
+    * Checks that the producers have not been started.
+    */
+   private void checkNotStarted() {
+      if (slots != null)
+         throw new IllegalStateException("Pipeline already started!");
+   }
+
+   /**
+    * Allocates the ring buffer and starts the producers.
+    */
+   private void start() {
+      numBatches = (passSize + batchSize - 1) / batchSize;
+      slots = new Batch[capacity];
+      for (int i = 0; i < capacity; ++i) {
+         slots[i] = new Batch(batchSize, numInputs, numOutputs);
+      }
+
+      // Batches in the ring span at most this many passes.
+      if (source != null && shuffle) {
+         int numOrders = (capacity - 1) / numBatches + 2;
+         orders = new int[numOrders][passSize];
+         orderPasses = new long[numOrders];
+         for (int i = 0; i < numOrders; ++i) {
+            orderPasses[i] = -1;
+         }
+      }
+
+      running = true;
+      producers = new Thread[numProducers];
+      for (int i = 0; i < numProducers; ++i) {
+         producers[i] = new Thread(new Runnable() {
+            public void run() {
+               produce();
+            }
+         }, "input-pipeline-" + i);
+         producers[i].setDaemon(true);
+         producers[i].start();
+      }
+   }
+
+   /**
+    * Prepares batches until shut down.
+    */
+   private void produce() {
+      Random random = new Random();
+      try {
+         while (true) {
+            long sequence;
+            synchronized (this) {
+               sequence = claimed++;
+
+               // Wait for the reader to release the slot's previous batch.
+               long start = System.nanoTime();
+               while (running && sequence - consumed >= slots.length) {
+                  wait();
+               }
+               blockedNanos += System.nanoTime() - start;
+               if (!running) return;
+            }
+
+            Batch batch = slots[(int) (sequence % slots.length)];
+            fill(batch, sequence, random);
+            synchronized (this) {
+               batch.sequence = sequence;
+               notifyAll();
+            }
+         }
+      } catch (InterruptedException e) {
+         // Shut down.
+      } catch (RuntimeException e) {
+         synchronized (this) {
+            failure = e;
+            notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Prepares a batch.
+    * @param batch batch to fill
+    * @param sequence stream position of the batch
+    * @param random producer's random number generator
+    */
+   private void fill(Batch batch, long sequence, Random random) {
+      long pass = sequence / numBatches;
+      int first = (int) (sequence % numBatches) * batchSize;
+      int count = Math.min(batchSize, passSize - first);
+      random.setSeed(seed + sequence * kSeedStride);
+
+      int[] order = (source != null && shuffle) ? getOrder(pass) : null;
+      for (int i = 0; i < count; ++i) {
+         TestCase test = batch.rows[i];
+         if (source != null) {
+            int index = (order != null) ? order[first + i] : first + i;
+            System.arraycopy(source.getInputMatrix(), index * numInputs,
+                             test.inputs, 0, numInputs);
+            System.arraycopy(source.getOutputMatrix(), index * numOutputs,
+                             test.outputs, 0, numOutputs);
+         } else {
+            generator.generate(random, test);
+         }
+         if (transform != null) transform.apply(random, test);
+      }
+      batch.count = count;
+   }
+
+   /**
+    * Gets the shuffled row order of a pass, shuffling it on first use.
+    * The order replaces that of a pass no longer in flight.
+    * @param pass pass index
+    * @return row order
+    */
+   private synchronized int[] getOrder(long pass) {
+      int slot = (int) (pass % orders.length);
+      int[] order = orders[slot];
+      if (orderPasses[slot] != pass) {
+         orderRandom.setSeed(seed - pass * kSeedStride);
+         for (int i = 0; i < passSize; ++i) {
+            order[i] = i;
+         }
+         for (int i = passSize - 1; i > 0; --i) {
+            int j = orderRandom.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+         }
+         orderPasses[slot] = pass;
+      }
+      return order;
+   }
+
+   /**
+    * Waits for a batch to be prepared.
+    * @param sequence stream position of the batch
+    * @return prepared batch
+    */
+   private synchronized Batch take(long sequence) {
+      Batch batch = slots[(int) (sequence % slots.length)];
+      if (batch.sequence != sequence) {
+         long start = System.nanoTime();
+         try {
+            while (batch.sequence != sequence && running && failure == null) {
+               wait();
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for input!");
+         }
+         starvedNanos += System.nanoTime() - start;
+         ++starvedBatches;
+      }
+      if (failure != null)
+         throw new RuntimeException("Input pipeline failed!", failure);
+      if (batch.sequence != sequence)
+         throw new IllegalStateException("Pipeline has been shut down!");
+      return batch;
+   }
+
+   /**
+    * Releases a batch so its slot can be refilled.
+    * @param sequence stream position of the batch
+    */
+   private synchronized void release(long sequence) {
+      consumed = sequence + 1;
+      notifyAll();
+   }
+}
@@ -0,0 +1,172 @@
+package network;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits training events to Java Flight Recorder.
+ * Events are only written while a recording is running, e.g. with
+ * -XX:StartFlightRecording, and cost almost nothing otherwise.
+ */
+public class JfrListener implements TrainingListener {
+   /**
+    * Ignores the start of training.
+    * @param network network being trained
+    * @param evaluation evaluation of the network before learning
+    */
+   public void trainingStarted(Network network, Evaluation evaluation) { }
+
+   /**
+    * Emits an epoch event, and a layer event per layer when the epoch
+    * was timed.
+    * @param stats epoch statistics
+    */
+   public void epochCompleted(EpochStats stats) {
+      EpochEvent event = new EpochEvent();
+      if (!event.isEnabled()) return;
+      event.epoch = stats.getEpoch();
+      event.samples = stats.getSamples();
+      event.learnTime = stats.getLearnNanos();
+      event.wallTime = stats.getWallNanos();
+      event.samplesPerSecond = stats.getSamplesPerSecond();
+      event.allocatedBytes = stats.getAllocatedBytes();
+      event.testError = stats.getTestError();
+      event.percentCorrect = stats.getPercentCorrect();
+      event.validationError = stats.getValidationError();
+      event.commit();
+
+      LayerTimings timings = stats.getTimings();
+      if (timings == null) return;
+      for (int i = 0; i < timings.getNumLayers(); ++i) {
+         LayerEvent layerEvent = new LayerEvent();
+         layerEvent.epoch = stats.getEpoch();
+         layerEvent.layer = i;
+         layerEvent.forwardTime = timings.getForwardNanos(i);
+         layerEvent.backwardTime = timings.getBackwardNanos(i);
+         layerEvent.commitTime = timings.getCommitNanos(i);
+         layerEvent.commit();
+      }
+   }
+
+   /**
+    * Emits a reset event.
+    * @param epoch epoch after which the network was reset
+    */
+   public void networkReset(int epoch) {
+      ResetEvent event = new ResetEvent();
+      event.epoch = epoch;
+      event.commit();
+   }
+
+   /**
+    * Ignores an early stop.
+    * @param epoch last epoch
+    * @param bestValidationError best validation error seen
+    */
+   public void earlyStopped(int epoch, double bestValidationError) { }
+
+   /**
+    * Ignores the end of training.
+    * @param network trained network
+    * @param evaluation evaluation of the trained network
+    */
+   public void trainingFinished(Network network, Evaluation evaluation) { }
+
+   /**
+    * Training epoch event.
+    */
+   @Name("network.Epoch")
+   @Label("Training Epoch")
+   @Category({ "Neural Network", "Training" })
+   @Description("Statistics of one training epoch")
+   static class EpochEvent extends Event {
+      /** Epoch number. */
+      @Label("Epoch")
+      int epoch;
+
+      /** Number of test cases learned. */
+      @Label("Samples")
+      long samples;
+
+      /** Time spent learning. */
+      @Label("Learning Time")
+      @Timespan(Timespan.NANOSECONDS)
+      long learnTime;
+
+      /** Wall time of the epoch. */
+      @Label("Wall Time")
+      @Timespan(Timespan.NANOSECONDS)
+      long wallTime;
+
+      /** Learning throughput. */
+      @Label("Samples per Second")
+      double samplesPerSecond;
+
+      /** Bytes allocated by the training thread. */
+      @Label("Allocated")
+      @DataAmount
+      long allocatedBytes;
+
+      /** Total test error. */
+      @Label("Test Error")
+      double testError;
+
+      /** Percentage of tests passed. */
+      @Label("Percent Correct")
+      double percentCorrect;
+
+      /** Validation error, or NaN if validation was not checked. */
+      @Label("Validation Error")
+      double validationError;
+   }
+
+   /**
+    * Per-layer epoch timing event.
+    */
+   @Name("network.LayerTiming")
+   @Label("Layer Timing")
+   @Category({ "Neural Network", "Training" })
+   @Description("Time spent in one layer during a training epoch")
+   static class LayerEvent extends Event {
+      /** Epoch number. */
+      @Label("Epoch")
+      int epoch;
+
+      /** Layer index. */
+      @Label("Layer")
+      int layer;
+
+      /** Time spent firing the layer. */
+      @Label("Forward Time")
+      @Timespan(Timespan.NANOSECONDS)
+      long forwardTime;
+
+      /** Time spent backpropagating through the layer. */
+      @Label("Backward Time")
+      @Timespan(Timespan.NANOSECONDS)
+      long backwardTime;
+
+      /** Time spent committing the layer's updates. */
+      @Label("Commit Time")
+      @Timespan(Timespan.NANOSECONDS)
+      long commitTime;
+   }
+
+   /**
+    * Network reset event.
+    */
+   @Name("network.Reset")
+   @Label("Network Reset")
+   @Category({ "Neural Network", "Training" })
+   @Description("Network reset after going stale or regressing")
+   static class ResetEvent extends Event {
+      /** Epoch number. */
+      @Label("Epoch")
+      int epoch;
+   }
+}
@@ -0,0 +1,78 @@
+package network;
+
+/**
+ * Implementation of the numeric kernels behind Kernels.
+ */
+interface KernelImpl {
+   /**
+    * Calculates a dot product.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+   /**
+    * Adds a scaled vector to another.
+    * y[i] += alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   void axpy(double alpha, double[] x, int xOffset,
+             double[] y, int yOffset, int length);
+
+   /**
+    * Stores a scaled vector.
+    * y[i] = alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   void scale(double alpha, double[] x, int xOffset,
+              double[] y, int yOffset, int length);
+
+   /**
+    * Calculates a single-precision dot product.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+   /**
+    * Adds a scaled single-precision vector to another.
+    * y[i] += alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   void axpy(float alpha, float[] x, int xOffset,
+             float[] y, int yOffset, int length);
+
+   /**
+    * Calculates an 8-bit integer dot product with 32-bit accumulation.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+}
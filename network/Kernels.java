@@ -0,0 +1,229 @@
+package network;
+
+import java.util.Random;
+
+/**
+ * Numeric kernels for the inner loops of firing and learning.
+ * Uses SIMD kernels from the Vector API when they were compiled in (from
+ * the simd source root) and the jdk.incubator.vector module is available
+ * (run with --add-modules jdk.incubator.vector), and scalar loops
+ * otherwise. The SIMD kernels are checked against the scalar ones when
+ * first loaded and are not used if they disagree.
+ *
+ * The implementation can be forced with the network.kernels system
+ * property ("scalar" or "vector").
+ */
+public class Kernels {
+   /** Relative tolerance for sums, which SIMD kernels reorder. */
+   private static final double kSumTolerance = 1e-9;
+
+   /** Single-precision relative tolerance for sums. */
+   private static final double kFloatSumTolerance = 1e-4;
+
+   /** Selected implementation. */
+   private static final KernelImpl kImpl = select();
+
+   /**
+    * Static class.
+    */
+   private Kernels() { }
+
+   /**
+    * Gets the name of the selected implementation.
+    * @return "vector" or "scalar"
+    */
+   public static String getImplementation() {
+      return (kImpl instanceof ScalarKernels) ? "scalar" : "vector";
+   }
+
+   /**
+    * Calculates a dot product.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   public static double dot(double[] a, int aOffset, double[] b, int bOffset,
+                            int length) {
+      return kImpl.dot(a, aOffset, b, bOffset, length);
+   }
+
+   /**
+    * Adds a scaled vector to another.
+    * y[i] += alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   public static void axpy(double alpha, double[] x, int xOffset,
+                           double[] y, int yOffset, int length) {
+      kImpl.axpy(alpha, x, xOffset, y, yOffset, length);
+   }
+
+   /**
+    * Stores a scaled vector.
+    * y[i] = alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   public static void scale(double alpha, double[] x, int xOffset,
+                            double[] y, int yOffset, int length) {
+      kImpl.scale(alpha, x, xOffset, y, yOffset, length);
+   }
+
+   /**
+    * Calculates a single-precision dot product.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   public static float dot(float[] a, int aOffset, float[] b, int bOffset,
+                           int length) {
+      return kImpl.dot(a, aOffset, b, bOffset, length);
+   }
+
+   /**
+    * Adds a scaled single-precision vector to another.
+    * y[i] += alpha * x[i]
+    * @param alpha scale
+    * @param x source array
+    * @param xOffset offset within x
+    * @param y destination array
+    * @param yOffset offset within y
+    * @param length number of elements
+    */
+   public static void axpy(float alpha, float[] x, int xOffset,
+                           float[] y, int yOffset, int length) {
+      kImpl.axpy(alpha, x, xOffset, y, yOffset, length);
+   }
+
+   /**
+    * Calculates an 8-bit integer dot product with 32-bit accumulation.
+    * Cannot overflow for fewer than 2^17 elements.
+    * @param a first array
+    * @param aOffset offset within a
+    * @param b second array
+    * @param bOffset offset within b
+    * @param length number of elements
+    * @return sum over i of (a[i] * b[i])
+    */
+   public static int dot(byte[] a, int aOffset, byte[] b, int bOffset,
+                         int length) {
+      return kImpl.dot(a, aOffset, b, bOffset, length);
+   }
+
+   /**
+    * Selects the kernel implementation.
+    * @return SIMD kernels if available and correct, else scalar kernels
+    */
+   private static KernelImpl select() {
+      KernelImpl scalar = new ScalarKernels();
+      String requested = System.getProperty("network.kernels", "vector");
+      if (requested.equals("scalar")) return scalar;
+
+      KernelImpl vector;
+      try {
+         vector = (KernelImpl) Class.forName("network.VectorKernels")
+            .getDeclaredConstructor().newInstance();
+      } catch (Exception | LinkageError e) {
+         // Module not present, or no vector shape fits this machine.
+         System.err.println("Vector kernels unavailable (" + e +
+                            "); using scalar kernels.");
+         return scalar;
+      }
+
+      if (!agrees(vector, scalar)) {
+         System.err.println("Vector kernels disagree with scalar kernels; " +
+                            "using scalar kernels.");
+         return scalar;
+      }
+      return vector;
+   }
+
+   /**
+    * Checks that two implementations produce the same results within
+    * tolerance, over lengths that exercise both vector bodies and tails.
+    * @param test implementation to check
+    * @param reference reference implementation
+    * @return whether the implementations agree
+    */
+   static boolean agrees(KernelImpl test, KernelImpl reference) {
+      Random rand = new Random(0);
+      int[] lengths = { 0, 1, 3, 7, 8, 15, 17, 64, 100, 1023 };
+      for (int length : lengths) {
+         // Offset the ranges so unaligned access is checked too.
+         int offset = 3;
+         double[] a = new double[length + offset];
+         double[] b = new double[length + offset];
+         float[] fa = new float[length + offset];
+         float[] fb = new float[length + offset];
+         byte[] ba = new byte[length + offset];
+         byte[] bb = new byte[length + offset];
+         for (int i = 0; i < a.length; ++i) {
+            a[i] = rand.nextDouble() * 2 - 1;
+            b[i] = rand.nextDouble() * 2 - 1;
+            fa[i] = (float) a[i];
+            fb[i] = (float) b[i];
+            ba[i] = (byte) rand.nextInt();
+            bb[i] = (byte) rand.nextInt();
+         }
+
+         // Dot products.
+         double scale = length + 1;
+         if (Math.abs(test.dot(a, offset, b, 0, length) -
+                      reference.dot(a, offset, b, 0, length))
+             > kSumTolerance * scale) return false;
+         if (Math.abs(test.dot(fa, offset, fb, 0, length) -
+                      reference.dot(fa, offset, fb, 0, length))
+             > kFloatSumTolerance * scale) return false;
+         if (test.dot(ba, offset, bb, 0, length) !=
+             reference.dot(ba, offset, bb, 0, length)) return false;
+
+         // Updates.
+         double[] y0 = b.clone();
+         double[] y1 = b.clone();
+         test.axpy(0.3, a, offset, y0, 0, length);
+         reference.axpy(0.3, a, offset, y1, 0, length);
+         if (!close(y0, y1, kSumTolerance)) return false;
+
+         test.scale(-0.7, a, offset, y0, 0, length);
+         reference.scale(-0.7, a, offset, y1, 0, length);
+         if (!close(y0, y1, kSumTolerance)) return false;
+
+         float[] fy0 = fb.clone();
+         float[] fy1 = fb.clone();
+         test.axpy(0.3f, fa, offset, fy0, 0, length);
+         reference.axpy(0.3f, fa, offset, fy1, 0, length);
+         for (int i = 0; i < fy0.length; ++i) {
+            if (Math.abs(fy0[i] - fy1[i]) > kFloatSumTolerance) return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Checks that two arrays are equal within an absolute tolerance.
+    * @param a first array
+    * @param b second array
+    * @param tolerance tolerance
+    * @return whether the arrays are close
+    */
+   private static boolean close(double[] a, double[] b, double tolerance) {
+      for (int i = 0; i < a.length; ++i) {
+         if (Math.abs(a[i] - b[i]) > tolerance) return false;
+      }
+      return true;
+   }
+}
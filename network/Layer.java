@@ -0,0 +1,590 @@
+package network;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Represents a layer of neurons backed by contiguous storage.
+ * Weights are stored row-major in a single array, one row per neuron, so
+ * the inner loops of firing and learning walk memory sequentially.
+ */
+public class Layer {
+   /** Element access for weight and bias arrays shared between threads. */
+   private static final VarHandle kElements =
+      MethodHandles.arrayElementVarHandle(double[].class);
+
+   /** Number of inputs to each neuron. */
+   private int numInputs;
+   /** Number of neurons in the layer. */
+   private int size;
+
+   /** Weight matrix (size x numInputs, row-major). */
+   private double[] weights;
+   /** Bias vector. */
+   private double[] biases;
+
+   /** Activation function. */
+   private Activation activation = Activation.kSigmoid;
+
+   /** Indices of pruned weights, which are held at zero, or null. */
+   private int[] pruned;
+
+   /**
+    * Deltas of weight changes made through neuron views, allocated on
+    * first use by the per-neuron delta methods.
+    */
+   private double[] weightDeltas;
+   /** Deltas of bias changes for backpropagation, or null. */
+   private double[] biasDeltas;
+
+   /**
+    * Randomized constructor.
+    * Randomizes weights and biases.
+    *
+    * @param numInputs number of inputs to each neuron
+    * @param size number of neurons
+    */
+   public Layer(int numInputs, int size) {
+      this(numInputs, size, new Random());
+   }
+
+   /**
+    * Seeded constructor.
+    * Randomizes weights and biases from a random number generator.
+    *
+    * @param numInputs number of inputs to each neuron
+    * @param size number of neurons
+    * @param rand random number generator
+    */
+   public Layer(int numInputs, int size, Random rand) {
+      this.numInputs = numInputs;
+      this.size = size;
+      this.weights = new double[size * numInputs];
+      this.biases = new double[size];
+      randomize(rand);
+   }
+
+   /**
+    * Explicit constructor.
+    * Initializes weights and biases, taking ownership of both arrays.
+    * Useful for copying and loading.
+    *
+    * @param numInputs number of inputs to each neuron
+    * @param weights initial weights (row-major)
+    * @param biases initial biases
+    */
+   Layer(int numInputs, double[] weights, double[] biases) {
+      this.numInputs = numInputs;
+      this.size = biases.length;
+      this.weights = weights;
+      this.biases = biases;
+   }
+
+   /**
+    * Getter for activation function.
+    * @return activation
+    */
+   public Activation getActivation() {
+      return activation;
+   }
+
+   /**
+    * Sets the activation function.
+    * @param activation activation
+    */
+   public void setActivation(Activation activation) {
+      this.activation = activation;
+   }
+
+   /**
+    * Randomizes the weights and biases.
+    */
+   public void randomize() {
+      randomize(new Random());
+   }
+
+   /**
+    * Randomizes the weights and biases from a random number generator.
+    * @param rand random number generator
+    */
+   public void randomize(Random rand) {
+      // Randomize weights.
+      for (int i = 0; i < weights.length; ++i) {
+         weights[i] = rand.nextDouble() * 2 - 1;
+      }
+      // Randomize biases.
+      for (int i = 0; i < size; ++i) {
+         biases[i] = rand.nextDouble() * 2 - 1;
+      }
+      holdPruned();
+   }
+
+   /**
+    * Randomizes the weights and bias of a single neuron.
+    * @param neuron neuron index
+    * @param rand random number generator
+    */
+   public void randomize(int neuron, Random rand) {
+      int row = neuron * numInputs;
+      for (int i = row; i < row + numInputs; ++i) {
+         weights[i] = rand.nextDouble() * 2 - 1;
+      }
+      biases[neuron] = rand.nextDouble() * 2 - 1;
+      holdPruned();
+   }
+
+   /**
+    * Prunes every weight whose magnitude is at most a threshold.
+    * Pruned weights are set to zero and held there by later updates, so
+    * the network can be fine-tuned around them. Weights pruned earlier
+    * stay pruned.
+    * @param threshold largest magnitude to prune
+    * @return number of pruned weights in the layer
+    */
+   public int prune(double threshold) {
+      if (threshold < 0.0)
+         throw new IllegalArgumentException("Invalid pruning threshold!");
+      boolean[] mask = pruneMask();
+      for (int i = 0; i < weights.length; ++i) {
+         if (Math.abs(weights[i]) <= threshold) mask[i] = true;
+      }
+      return setPruned(mask);
+   }
+
+   /**
+    * Prunes the smallest weights until a fraction of the layer is pruned.
+    * Weights pruned earlier stay pruned, and count toward the fraction.
+    * @param sparsity fraction of weights to prune, in [0, 1)
+    * @return number of pruned weights in the layer
+    */
+   public int pruneToSparsity(double sparsity) {
+      if (sparsity < 0.0 || sparsity >= 1.0)
+         throw new IllegalArgumentException("Invalid sparsity!");
+      int target = (int) (sparsity * weights.length);
+      if (target <= getNumPruned()) return getNumPruned();
+
+      // Find the magnitude of the last weight to prune.
+      boolean[] mask = pruneMask();
+      double[] magnitudes = new double[weights.length];
+      for (int i = 0; i < weights.length; ++i) {
+         magnitudes[i] = mask[i] ? 0.0 : Math.abs(weights[i]);
+      }
+      Arrays.sort(magnitudes);
+      double threshold = magnitudes[target - 1];
+
+      // Prune below the threshold, then ties until the target is reached.
+      int count = 0;
+      for (int i = 0; i < weights.length; ++i) {
+         if (!mask[i] && Math.abs(weights[i]) < threshold) mask[i] = true;
+         if (mask[i]) ++count;
+      }
+      for (int i = 0; i < weights.length && count < target; ++i) {
+         if (!mask[i] && Math.abs(weights[i]) == threshold) {
+            mask[i] = true;
+            ++count;
+         }
+      }
+      return setPruned(mask);
+   }
+
+   /**
+    * Gets the number of pruned weights.
+    * @return number of pruned weights
+    */
+   public int getNumPruned() {
+      return (pruned == null) ? 0 : pruned.length;
+   }
+
+   /**
+    * Resets pruned weights to zero after an update.
+    * Does nothing if the layer is not pruned.
+    */
+   public void holdPruned() {
+      if (pruned == null) return;
+      for (int i = 0; i < pruned.length; ++i) {
+         weights[pruned[i]] = 0.0;
+      }
+   }
+
+   /**
+    * Prunes the same weights as another layer of the same shape.
+    * @param other layer to copy pruning from
+    */
+   void copyPruning(Layer other) {
+      pruned = other.pruned;
+      holdPruned();
+   }
+
+   /**
+    * Gets a mask of the currently pruned weights.
+    * @return whether each weight is pruned
+    */
+   private boolean[] pruneMask() {
+      boolean[] mask = new boolean[weights.length];
+      for (int i = 0; i < getNumPruned(); ++i) {
+         mask[pruned[i]] = true;
+      }
+      return mask;
+   }
+
+   /**
+    * Sets the pruned weights from a mask and zeros them.
+    * @param mask whether each weight is pruned
+    * @return number of pruned weights
+    */
+   private int setPruned(boolean[] mask) {
+      int count = 0;
+      for (int i = 0; i < mask.length; ++i) {
+         if (mask[i]) ++count;
+      }
+      pruned = new int[count];
+      for (int i = 0, j = 0; i < mask.length; ++i) {
+         if (mask[i]) pruned[j++] = i;
+      }
+      holdPruned();
+      return count;
+   }
+
+   /**
+    * Fires the layer.
+    * @param input array of input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      double[] output = new double[size];
+      fire(input, output);
+      return output;
+   }
+
+   /**
+    * Fires the layer into a provided output array.
+    * @param input array of input signals
+    * @param output array to receive output signals
+    */
+   public void fire(double[] input, double[] output) {
+      // Ensure input is of proper length.
+      if (input.length != numInputs)
+         throw new RuntimeException("Layer received invalid number of inputs!");
+
+      fire(input, 0, output);
+   }
+
+   /**
+    * Fires the layer from a row of a larger array.
+    * @param input array containing input signals
+    * @param offset offset of the input signals within the array
+    * @param output array to receive output signals
+    */
+   public void fire(double[] input, int offset, double[] output) {
+      // Ensure input is of proper length.
+      if (input.length - offset < numInputs)
+         throw new RuntimeException("Layer received invalid number of inputs!");
+
+      // Calculate activation inputs.
+      for (int n = 0, row = 0; n < size; ++n, row += numInputs) {
+         output[n] = biases[n] +
+            Kernels.dot(input, offset, weights, row, numInputs);
+      }
+
+      // Calculate signal outputs.
+      activation.apply(output, 0, size);
+   }
+
+   /**
+    * Fires the layer for a batch of inputs.
+    * Computes the weighted sums as one blocked matrix multiply, then
+    * applies the activation over the whole batch in a single pass.
+    * @param input input signals (rows x numInputs, row-major)
+    * @param rows number of input vectors
+    * @param output array to receive output signals (rows x size, row-major)
+    */
+   public void fireBatch(double[] input, int rows, double[] output) {
+      fireBatch(input, 0, rows, output);
+   }
+
+   /**
+    * Fires the layer for a batch of inputs held within a larger array.
+    * @param input array containing input signals (rows x numInputs,
+    *              row-major)
+    * @param offset offset of the first input signal within the array
+    * @param rows number of input vectors
+    * @param output array to receive output signals (rows x size, row-major)
+    */
+   public void fireBatch(double[] input, int offset, int rows,
+                         double[] output) {
+      // Ensure input is of proper length.
+      if (input.length - offset < rows * numInputs)
+         throw new RuntimeException("Layer received invalid number of inputs!");
+
+      // Start each row from the biases.
+      for (int r = 0; r < rows; ++r) {
+         System.arraycopy(biases, 0, output, r * size, size);
+      }
+
+      // Calculate activation inputs.
+      Matrix.multiplyTransposed(input, offset, rows, numInputs,
+                                weights, size, output);
+
+      // Calculate signal outputs.
+      activation.applyBatch(output, rows, size);
+   }
+
+   /**
+    * Fires a single neuron of the layer.
+    * @param neuron neuron index
+    * @param input array of input signals
+    * @return output signal
+    */
+   public double fire(int neuron, double[] input) {
+      // Ensure input is of proper length.
+      if (input.length != numInputs)
+         throw new RuntimeException("Neuron received invalid number of inputs!");
+
+      // Calculate activation input.
+      double x = biases[neuron] +
+         Kernels.dot(input, 0, weights, neuron * numInputs, numInputs);
+
+      // Calculate signal output.
+      return activation.calculate(x);
+   }
+
+   /**
+    * Calculates weight and bias gradients for every neuron in the layer.
+    * gradient[c][p] = errors[c] * input[p]
+    * @param errors backpropagated error for each neuron
+    * @param input array containing input signals the layer was fired with
+    * @param offset offset of the input signals within the array
+    * @param weightGradients array to receive weight gradients (row-major)
+    * @param biasGradients array to receive bias gradients
+    */
+   public void calcGradients(double[] errors, double[] input, int offset,
+                             double[] weightGradients,
+                             double[] biasGradients) {
+      for (int c = 0, row = 0; c < size; ++c, row += numInputs) {
+         double error = errors[c];
+
+         // Set weight gradients.
+         Kernels.scale(error, input, offset, weightGradients, row, numInputs);
+         // Set bias gradient.
+         biasGradients[c] = error;
+      }
+   }
+
+   /**
+    * Adds weight and bias gradients for every neuron in the layer to
+    * existing gradients.
+    * gradient[c][p] += errors[c] * input[p]
+    * @param errors backpropagated error for each neuron
+    * @param input array containing input signals the layer was fired with
+    * @param offset offset of the input signals within the array
+    * @param weightGradients weight gradients to add to (row-major)
+    * @param biasGradients bias gradients to add to
+    */
+   public void accumulateGradients(double[] errors, double[] input,
+                                   int offset, double[] weightGradients,
+                                   double[] biasGradients) {
+      for (int c = 0, row = 0; c < size; ++c, row += numInputs) {
+         double error = errors[c];
+
+         // Add weight gradients.
+         Kernels.axpy(error, input, offset, weightGradients, row, numInputs);
+         // Add bias gradient.
+         biasGradients[c] += error;
+      }
+   }
+
+   /**
+    * Applies weight and bias gradients to the layer.
+    * weights[i] += scale * weightGradients[i]
+    * @param weightGradients weight gradients (row-major)
+    * @param biasGradients bias gradients
+    * @param scale gradient scale
+    */
+   public void applyGradients(double[] weightGradients,
+                              double[] biasGradients, double scale) {
+      Kernels.axpy(scale, weightGradients, 0, weights, 0, weights.length);
+      Kernels.axpy(scale, biasGradients, 0, biases, 0, size);
+   }
+
+   /**
+    * Applies weight and bias gradients to the layer without locking, for
+    * threads updating the same layer at once.
+    * Each element is written with an opaque store, so values never tear,
+    * but concurrent updates to the same element may overwrite each other.
+    * Rows of neurons with no error are skipped, so sparse updates touch
+    * only the rows they change.
+    * weights[i] += scale * weightGradients[i]
+    * @param weightGradients weight gradients (row-major)
+    * @param biasGradients bias gradients, which are the neuron errors
+    * @param scale gradient scale
+    */
+   public void applyGradientsOpaque(double[] weightGradients,
+                                    double[] biasGradients, double scale) {
+      for (int c = 0, row = 0; c < size; ++c, row += numInputs) {
+         if (biasGradients[c] == 0.0) continue;
+
+         axpyOpaque(scale, weightGradients, weights, row, numInputs);
+         axpyOpaque(scale, biasGradients, biases, c, 1);
+      }
+   }
+
+   /**
+    * Adds a scaled vector to a shared vector with opaque stores.
+    * y[i] += alpha * x[i]
+    * @param alpha scale
+    * @param x vector to add
+    * @param y shared vector to add to
+    * @param offset offset of both vectors
+    * @param length number of elements
+    */
+   private static void axpyOpaque(double alpha, double[] x, double[] y,
+                                  int offset, int length) {
+      for (int i = offset; i < offset + length; ++i) {
+         kElements.setOpaque(y, i, (double) kElements.getOpaque(y, i) +
+                                   alpha * x[i]);
+      }
+   }
+
+   /**
+    * Backpropagates errors through the layer's weights.
+    * sigma[p] = sum over c of (errors[c] * weights[c][p])
+    * @param errors error for each neuron in this layer
+    * @param sigma array to receive the weighted error sum for each input
+    */
+   public void backpropagate(double[] errors, double[] sigma) {
+      for (int p = 0; p < numInputs; ++p) {
+         sigma[p] = 0.0;
+      }
+
+      // Walk rows in order so the weight matrix is read sequentially.
+      for (int c = 0, row = 0; c < size; ++c, row += numInputs) {
+         Kernels.axpy(errors[c], weights, row, sigma, 0, numInputs);
+      }
+   }
+
+   /**
+    * Sets the weight delta of a particular weight.
+    * @param neuron neuron index
+    * @param weightIndex weight index
+    * @param offset weight offset
+    */
+   public void setWeightDelta(int neuron, int weightIndex, double offset) {
+      allocateDeltas();
+      weightDeltas[neuron * numInputs + weightIndex] = offset;
+   }
+
+   /**
+    * Sets the bias delta of a particular neuron.
+    * @param neuron neuron index
+    * @param offset bias offset
+    */
+   public void setBiasDelta(int neuron, double offset) {
+      allocateDeltas();
+      biasDeltas[neuron] = offset;
+   }
+
+   /**
+    * Commits pending deltas for a single neuron.
+    * @param neuron neuron index
+    */
+   public void commitDeltas(int neuron) {
+      if (weightDeltas == null) return;
+      int row = neuron * numInputs;
+      for (int i = row; i < row + numInputs; ++i) {
+         weights[i] += weightDeltas[i];
+         weightDeltas[i] = 0;
+      }
+      biases[neuron] += biasDeltas[neuron];
+      biasDeltas[neuron] = 0;
+   }
+
+   /**
+    * Allocates the delta arrays on first use.
+    * Only neuron views use them, so most layers hold no deltas.
+    */
+   private void allocateDeltas() {
+      if (weightDeltas == null) {
+         weightDeltas = new double[weights.length];
+         biasDeltas = new double[size];
+      }
+   }
+
+   /**
+    * Gets a view of a neuron in this layer.
+    * @param index neuron index
+    * @return neuron view
+    */
+   public Neuron getNeuron(int index) {
+      return new Neuron(this, index);
+   }
+
+   /**
+    * Getter for number of inputs.
+    * @return number of inputs
+    */
+   public int getNumInputs() {
+      return numInputs;
+   }
+
+   /**
+    * Getter for number of neurons.
+    * @return number of neurons
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Getter for the weight matrix (size x numInputs, row-major).
+    * @return weights
+    */
+   public double[] getWeights() {
+      return weights;
+   }
+
+   /**
+    * Getter for biases.
+    * @return biases
+    */
+   public double[] getBiases() {
+      return biases;
+   }
+
+   /**
+    * Copies another layer's weights, biases and pruning into this layer in
+    * place.
+    * @param other layer of the same shape
+    */
+   public void copyFrom(Layer other) {
+      if (other.numInputs != numInputs || other.size != size)
+         throw new IllegalArgumentException("Layer shapes do not match!");
+      System.arraycopy(other.weights, 0, weights, 0, weights.length);
+      System.arraycopy(other.biases, 0, biases, 0, size);
+      pruned = other.pruned;
+   }
+
+   /**
+    * Clones this layer.
+    * @return clone
+    */
+   public Layer clone() {
+      Layer layer = new Layer(numInputs, weights.clone(), biases.clone());
+      layer.activation = activation;
+      layer.pruned = pruned;
+      return layer;
+   }
+
+   /**
+    * Returns a string representation of this layer.
+    * @return string representation
+    */
+   public String toString() {
+      StringBuilder sb = new StringBuilder("  LAYER\n");
+      for (int i = 0; i < size; ++i) {
+         sb.append(getNeuron(i) + "\n");
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,99 @@
+package network;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates time spent in each layer during learning, split into the
+ * forward pass, the backward pass (gradients and backpropagated errors),
+ * and committing updates.
+ * Timings are gathered by a workspace, so they cover a single thread.
+ */
+public class LayerTimings {
+   /** Forward time of each layer, in nanoseconds. */
+   final long[] forwardNanos;
+   /** Backward time of each layer, in nanoseconds. */
+   final long[] backwardNanos;
+   /** Commit time of each layer, in nanoseconds. */
+   final long[] commitNanos;
+
+   /**
+    * Constructor.
+    * @param numLayers number of neuron layers
+    */
+   public LayerTimings(int numLayers) {
+      this.forwardNanos = new long[numLayers];
+      this.backwardNanos = new long[numLayers];
+      this.commitNanos = new long[numLayers];
+   }
+
+   /**
+    * Clears all timings.
+    */
+   public void clear() {
+      Arrays.fill(forwardNanos, 0);
+      Arrays.fill(backwardNanos, 0);
+      Arrays.fill(commitNanos, 0);
+   }
+
+   /**
+    * Copies another set of timings into this one.
+    * @param other timings for the same number of layers
+    */
+   public void copyFrom(LayerTimings other) {
+      System.arraycopy(other.forwardNanos, 0, forwardNanos, 0,
+                       forwardNanos.length);
+      System.arraycopy(other.backwardNanos, 0, backwardNanos, 0,
+                       backwardNanos.length);
+      System.arraycopy(other.commitNanos, 0, commitNanos, 0,
+                       commitNanos.length);
+   }
+
+   /**
+    * Gets the number of neuron layers.
+    * @return number of layers
+    */
+   public int getNumLayers() {
+      return forwardNanos.length;
+   }
+
+   /**
+    * Gets the forward time of a layer.
+    * @param layerIndex layer index
+    * @return time in nanoseconds
+    */
+   public long getForwardNanos(int layerIndex) {
+      return forwardNanos[layerIndex];
+   }
+
+   /**
+    * Gets the backward time of a layer.
+    * @param layerIndex layer index
+    * @return time in nanoseconds
+    */
+   public long getBackwardNanos(int layerIndex) {
+      return backwardNanos[layerIndex];
+   }
+
+   /**
+    * Gets the commit time of a layer.
+    * @param layerIndex layer index
+    * @return time in nanoseconds
+    */
+   public long getCommitNanos(int layerIndex) {
+      return commitNanos[layerIndex];
+   }
+
+   /**
+    * Returns a string representation of these timings, in milliseconds.
+    * @return string representation
+    */
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < forwardNanos.length; ++i) {
+         sb.append(String.format("layer %d: forward %.3fms, " +
+            "backward %.3fms, commit %.3fms\n", i, forwardNanos[i] / 1e6,
+            backwardNanos[i] / 1e6, commitNanos[i] / 1e6));
+      }
+      return sb.toString();
+   }
+}
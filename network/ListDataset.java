@@ -0,0 +1,61 @@
+package network;
+
+import java.util.ArrayList;
+
+/**
+ * Represents a dataset held in memory as a list of test cases.
+ */
+public class ListDataset implements Dataset {
+   /** Test suite. */
+   private final ArrayList<TestCase> tests;
+
+   /**
+    * Constructor.
+    * The list is not copied, so later additions are visible to new passes.
+    * @param tests test suite
+    */
+   public ListDataset(ArrayList<TestCase> tests) {
+      this.tests = tests;
+   }
+
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs, or zero if the suite is empty
+    */
+   public int getNumInputs() {
+      return tests.isEmpty() ? 0 : tests.get(0).inputs.length;
+   }
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs, or zero if the suite is empty
+    */
+   public int getNumOutputs() {
+      return tests.isEmpty() ? 0 : tests.get(0).outputs.length;
+   }
+
+   /**
+    * Getter for the test suite.
+    * @return test suite
+    */
+   public ArrayList<TestCase> getTests() {
+      return tests;
+   }
+
+   /**
+    * Opens a pass over the suite.
+    * @return reader positioned at the first test case
+    */
+   public DatasetReader open() {
+      return new DatasetReader() {
+         /** Index of the next test case. */
+         private int index = 0;
+
+         public TestCase next() {
+            return (index < tests.size()) ? tests.get(index++) : null;
+         }
+
+         public void close() { }
+      };
+   }
+}
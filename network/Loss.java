@@ -0,0 +1,239 @@
+package network;
+
+/**
+ * Represents a loss function minimized by learning.
+ * Each loss computes the output layer's backpropagated errors fused with
+ * the output activation's derivative.
+ */
+public abstract class Loss {
+   /** Half the sum of squared deviations. */
+   public static final Loss kSquaredError = new SquaredError();
+   /**
+    * Cross-entropy: categorical for a softmax output layer, and binary
+    * per output for a sigmoid output layer.
+    */
+   public static final Loss kCrossEntropy = new CrossEntropy();
+
+   /** Losses by code. */
+   private static final Loss[] kByCode = { kSquaredError, kCrossEntropy };
+
+   /** Smallest output passed to the logarithm. */
+   private static final double kMinOutput = 1e-15;
+
+   /** Code identifying the loss in model files. */
+   private final int code;
+   /** Name of the loss. */
+   private final String name;
+
+   /**
+    * Constructor.
+    * @param code code identifying the loss in model files
+    * @param name name of the loss
+    */
+   Loss(int code, String name) {
+      this.code = code;
+      this.name = name;
+   }
+
+   /**
+    * Gets a loss by its code.
+    * @param code loss code
+    * @return loss, or null if the code is unknown
+    */
+   public static Loss fromCode(int code) {
+      return (code >= 0 && code < kByCode.length) ? kByCode[code] : null;
+   }
+
+   /**
+    * Getter for code.
+    * @return code identifying the loss in model files
+    */
+   public int getCode() {
+      return code;
+   }
+
+   /**
+    * Determines whether this loss can be used with an output activation.
+    * @param activation output layer activation
+    * @return whether the pair is supported
+    */
+   public abstract boolean supports(Activation activation);
+
+   /**
+    * Calculates the loss of an output.
+    * @param actual network output
+    * @param expected array containing expected output
+    * @param offset offset of the expected output within the array
+    * @param activation output layer activation
+    * @return loss
+    */
+   public double calculate(double[] actual, double[] expected, int offset,
+                           Activation activation) {
+      return calculate(actual, 0, expected, offset, actual.length,
+                       activation);
+   }
+
+   /**
+    * Calculates the loss of an output held in a larger array, such as a
+    * row of a batch.
+    * @param actual array containing network output
+    * @param actualOffset offset of the output within the array
+    * @param expected array containing expected output
+    * @param expectedOffset offset of the expected output within the array
+    * @param length number of outputs
+    * @param activation output layer activation
+    * @return loss
+    */
+   public abstract double calculate(double[] actual, int actualOffset,
+                                    double[] expected, int expectedOffset,
+                                    int length, Activation activation);
+
+   /**
+    * Calculates the output layer's backpropagated errors, which are the
+    * negated derivative of the loss with respect to the output layer's
+    * inputs.
+    * @param actual network output
+    * @param expected array containing expected output
+    * @param offset offset of the expected output within the array
+    * @param activation output layer activation
+    * @param errors array to receive backpropagated errors
+    */
+   public abstract void outputErrors(double[] actual, double[] expected,
+                                     int offset, Activation activation,
+                                     double[] errors);
+
+   /**
+    * Returns the name of this loss.
+    * @return name
+    */
+   public String toString() {
+      return name;
+   }
+
+   /**
+    * Half the sum of squared deviations.
+    */
+   private static class SquaredError extends Loss {
+      /**
+       * Constructor.
+       */
+      SquaredError() {
+         super(0, "squared error");
+      }
+
+      /**
+       * Supports every output activation.
+       * @param activation output layer activation
+       * @return whether the pair is supported
+       */
+      public boolean supports(Activation activation) {
+         return true;
+      }
+
+      /**
+       * Sums half the squared deviation of each output.
+       * @param actual array containing network output
+       * @param actualOffset offset of the output within the array
+       * @param expected array containing expected output
+       * @param expectedOffset offset of the expected output within the array
+       * @param length number of outputs
+       * @param activation output layer activation
+       * @return loss
+       */
+      public double calculate(double[] actual, int actualOffset,
+                              double[] expected, int expectedOffset,
+                              int length, Activation activation) {
+         double loss = 0.0;
+         for (int i = 0; i < length; ++i) {
+            double deviation =
+               expected[expectedOffset + i] - actual[actualOffset + i];
+            loss += 0.5 * deviation * deviation;
+         }
+         return loss;
+      }
+
+      /**
+       * Computes the deviations scaled by the activation's derivative.
+       * @param actual network output
+       * @param expected array containing expected output
+       * @param offset offset of the expected output within the array
+       * @param activation output layer activation
+       * @param errors array to receive backpropagated errors
+       */
+      public void outputErrors(double[] actual, double[] expected,
+                               int offset, Activation activation,
+                               double[] errors) {
+         for (int i = 0; i < actual.length; ++i) {
+            errors[i] = expected[offset + i] - actual[i];
+         }
+         activation.derivative(actual, errors, actual.length);
+      }
+   }
+
+   /**
+    * Cross-entropy.
+    * With a matching softmax or sigmoid output, the activation's
+    * derivative cancels and the errors are the plain deviations.
+    */
+   private static class CrossEntropy extends Loss {
+      /**
+       * Constructor.
+       */
+      CrossEntropy() {
+         super(1, "cross-entropy");
+      }
+
+      /**
+       * Supports softmax and sigmoid outputs.
+       * @param activation output layer activation
+       * @return whether the pair is supported
+       */
+      public boolean supports(Activation activation) {
+         return activation == Activation.kSoftmax ||
+                activation == Activation.kSigmoid;
+      }
+
+      /**
+       * Sums the categorical cross-entropy for a softmax output, or the
+       * binary cross-entropy of each output otherwise.
+       * @param actual array containing network output
+       * @param actualOffset offset of the output within the array
+       * @param expected array containing expected output
+       * @param expectedOffset offset of the expected output within the array
+       * @param length number of outputs
+       * @param activation output layer activation
+       * @return loss
+       */
+      public double calculate(double[] actual, int actualOffset,
+                              double[] expected, int expectedOffset,
+                              int length, Activation activation) {
+         double loss = 0.0;
+         for (int i = 0; i < length; ++i) {
+            double out = actual[actualOffset + i];
+            double target = expected[expectedOffset + i];
+            loss -= target * Math.log(Math.max(out, kMinOutput));
+            if (activation != Activation.kSoftmax) {
+               loss -= (1 - target) * Math.log(Math.max(1 - out, kMinOutput));
+            }
+         }
+         return loss;
+      }
+
+      /**
+       * Computes the plain deviations, which the matching activation's
+       * derivative reduces to.
+       * @param actual network output
+       * @param expected array containing expected output
+       * @param offset offset of the expected output within the array
+       * @param activation output layer activation
+       * @param errors array to receive backpropagated errors
+       */
+      public void outputErrors(double[] actual, double[] expected,
+                               int offset, Activation activation,
+                               double[] errors) {
+         for (int i = 0; i < actual.length; ++i) {
+            errors[i] = expected[offset + i] - actual[i];
+         }
+      }
+   }
+}
@@ -0,0 +1,80 @@
+package network;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Represents a model fired straight from a memory-mapped model file.
+ * Weights are never copied onto the heap, so opening a model costs the
+ * same regardless of its size. Mapped models are read-only and may be
+ * fired from any number of threads.
+ */
+public class MappedModel implements Model {
+   /** Layer sizes. */
+   private final int[] layerSizes;
+
+   /** Weight matrix of each layer (size x inputs, row-major). */
+   private final DoubleBuffer[] weights;
+
+   /** Bias vector of each layer. */
+   private final DoubleBuffer[] biases;
+
+   /** Activation function of each layer. */
+   private final Activation[] activations;
+
+   /**
+    * Constructor.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param weights mapped weight matrix of each layer
+    * @param biases mapped bias vector of each layer
+    * @param activations activation function of each layer
+    */
+   MappedModel(int[] layerSizes, DoubleBuffer[] weights,
+               DoubleBuffer[] biases, Activation[] activations) {
+      this.layerSizes = layerSizes;
+      this.weights = weights;
+      this.biases = biases;
+      this.activations = activations;
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes;
+   }
+
+   /**
+    * Fires the model and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      // Validate input size.
+      if (input.length != layerSizes[0])
+         throw new RuntimeException("Model fired with improper input!");
+
+      // Thread input through layers.
+      for (int l = 0; l < weights.length; ++l) {
+         DoubleBuffer layerWeights = weights[l];
+         DoubleBuffer layerBiases = biases[l];
+         int numInputs = layerSizes[l];
+         double[] output = new double[layerSizes[l + 1]];
+
+         for (int n = 0, row = 0; n < output.length; ++n, row += numInputs) {
+            double x = layerBiases.get(n);
+
+            // Calculate activation input.
+            for (int i = 0; i < numInputs; ++i) {
+               x += input[i] * layerWeights.get(row + i);
+            }
+            output[n] = x;
+         }
+
+         // Calculate signal outputs.
+         activations[l].apply(output, 0, output.length);
+         input = output;
+      }
+      return input;
+   }
+}
@@ -0,0 +1,100 @@
+package network;
+
+/**
+ * Cache-blocked kernels for packed row-major matrices.
+ */
+public class Matrix {
+   /** Rows of the left matrix per block. */
+   private static final int kRowBlock = 64;
+   /** Rows of the right matrix per block. */
+   private static final int kColBlock = 64;
+   /** Inner dimension per block. */
+   private static final int kInnerBlock = 256;
+
+   /**
+    * Static class.
+    */
+   private Matrix() { }
+
+   /**
+    * Multiplies a matrix by the transpose of another, adding the product
+    * to an output matrix.
+    * c[i][j] += sum over k of (a[i][k] * b[j][k])
+    * Both operands are read along contiguous rows, which suits a batch of
+    * inputs (a) against a layer's row-major weights (b).
+    * @param a left matrix (aRows x inner, row-major)
+    * @param aOffset offset of the left matrix within a
+    * @param aRows number of rows in a
+    * @param inner inner dimension
+    * @param b right matrix (bRows x inner, row-major)
+    * @param bRows number of rows in b
+    * @param c output matrix (aRows x bRows, row-major)
+    */
+   public static void multiplyTransposed(double[] a, int aOffset,
+                                         int aRows, int inner,
+                                         double[] b, int bRows,
+                                         double[] c) {
+      for (int i0 = 0; i0 < aRows; i0 += kRowBlock) {
+         int i1 = Math.min(i0 + kRowBlock, aRows);
+
+         for (int j0 = 0; j0 < bRows; j0 += kColBlock) {
+            int j1 = Math.min(j0 + kColBlock, bRows);
+
+            for (int k0 = 0; k0 < inner; k0 += kInnerBlock) {
+               int k1 = Math.min(k0 + kInnerBlock, inner);
+               multiplyBlock(a, aOffset, inner, b, bRows, c,
+                             i0, i1, j0, j1, k0, k1);
+            }
+         }
+      }
+   }
+
+   /**
+    * Multiplies one block.
+    * Each output element is a dot product of two contiguous row segments,
+    * which runs on the SIMD kernels where available.
+    * @param a left matrix
+    * @param aOffset offset of the left matrix within a
+    * @param inner inner dimension
+    * @param b right matrix
+    * @param bRows number of rows in b
+    * @param c output matrix
+    * @param i0 first row of a
+    * @param i1 row of a after the last
+    * @param j0 first row of b
+    * @param j1 row of b after the last
+    * @param k0 first inner index
+    * @param k1 inner index after the last
+    */
+   private static void multiplyBlock(double[] a, int aOffset, int inner,
+                                     double[] b, int bRows, double[] c,
+                                     int i0, int i1, int j0, int j1,
+                                     int k0, int k1) {
+      int length = k1 - k0;
+      for (int i = i0; i < i1; ++i) {
+         int aRow = aOffset + i * inner + k0;
+         int cRow = i * bRows;
+         for (int j = j0; j < j1; ++j) {
+            c[cRow + j] += Kernels.dot(a, aRow, b, j * inner + k0, length);
+         }
+      }
+   }
+
+   /**
+    * Packs a set of vectors into a row-major matrix.
+    * @param rows vectors of equal length
+    * @param from index of first vector
+    * @param to index after the last vector
+    * @param cols vector length
+    * @return packed matrix
+    */
+   public static double[] pack(double[][] rows, int from, int to, int cols) {
+      double[] packed = new double[(to - from) * cols];
+      for (int i = from; i < to; ++i) {
+         if (rows[i].length != cols)
+            throw new RuntimeException("Cannot pack vectors of unequal length!");
+         System.arraycopy(rows[i], 0, packed, (i - from) * cols, cols);
+      }
+      return packed;
+   }
+}
@@ -0,0 +1,173 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records training events in memory.
+ * Epoch times and throughput are kept in histograms and per-layer times
+ * are summed, so the cost of recording is constant however long training
+ * runs. Recorded metrics may be read from any thread while training.
+ */
+public class MetricsRecorder implements TrainingListener {
+   /** Epoch wall times, in nanoseconds. */
+   private final Histogram wallNanos = new Histogram();
+   /** Epoch learning times, in nanoseconds. */
+   private final Histogram learnNanos = new Histogram();
+   /** Epoch throughput, in test cases per second. */
+   private final Histogram samplesPerSecond = new Histogram();
+
+   /** Number of epochs. */
+   private final AtomicLong epochs = new AtomicLong();
+   /** Number of network resets. */
+   private final AtomicLong resets = new AtomicLong();
+   /** Total bytes allocated by the training thread. */
+   private final AtomicLong allocatedBytes = new AtomicLong();
+
+   /** Summed per-layer timings, or null until an epoch reports them. */
+   private LayerTimings totalTimings;
+
+   /** Statistics of the most recent epoch. */
+   private volatile EpochStats last;
+
+   /**
+    * Ignores the start of training.
+    * @param network network being trained
+    * @param evaluation evaluation of the network before learning
+    */
+   public void trainingStarted(Network network, Evaluation evaluation) { }
+
+   /**
+    * Records the epoch's times, throughput, allocation and layer timings.
+    * @param stats epoch statistics
+    */
+   public void epochCompleted(EpochStats stats) {
+      wallNanos.record(stats.getWallNanos());
+      learnNanos.record(stats.getLearnNanos());
+      samplesPerSecond.record((long) stats.getSamplesPerSecond());
+      epochs.incrementAndGet();
+      if (stats.getAllocatedBytes() > 0) {
+         allocatedBytes.addAndGet(stats.getAllocatedBytes());
+      }
+
+      LayerTimings timings = stats.getTimings();
+      if (timings != null) {
+         synchronized (this) {
+            if (totalTimings == null) {
+               totalTimings = new LayerTimings(timings.getNumLayers());
+            }
+            for (int i = 0; i < timings.getNumLayers(); ++i) {
+               totalTimings.forwardNanos[i] += timings.forwardNanos[i];
+               totalTimings.backwardNanos[i] += timings.backwardNanos[i];
+               totalTimings.commitNanos[i] += timings.commitNanos[i];
+            }
+         }
+      }
+      last = stats;
+   }
+
+   /**
+    * Counts a network reset.
+    * @param epoch epoch after which the network was reset
+    */
+   public void networkReset(int epoch) {
+      resets.incrementAndGet();
+   }
+
+   /**
+    * Ignores an early stop.
+    * @param epoch last epoch
+    * @param bestValidationError best validation error seen
+    */
+   public void earlyStopped(int epoch, double bestValidationError) { }
+
+   /**
+    * Ignores the end of training.
+    * @param network trained network
+    * @param evaluation evaluation of the trained network
+    */
+   public void trainingFinished(Network network, Evaluation evaluation) { }
+
+   /**
+    * Getter for epoch wall times.
+    * @return histogram of wall times, in nanoseconds
+    */
+   public Histogram getWallNanos() {
+      return wallNanos;
+   }
+
+   /**
+    * Getter for epoch learning times.
+    * @return histogram of learning times, in nanoseconds
+    */
+   public Histogram getLearnNanos() {
+      return learnNanos;
+   }
+
+   /**
+    * Getter for epoch throughput.
+    * @return histogram of test cases learned per second
+    */
+   public Histogram getSamplesPerSecond() {
+      return samplesPerSecond;
+   }
+
+   /**
+    * Gets the number of epochs recorded.
+    * @return number of epochs
+    */
+   public long getEpochs() {
+      return epochs.get();
+   }
+
+   /**
+    * Gets the number of network resets recorded.
+    * @return number of resets
+    */
+   public long getResets() {
+      return resets.get();
+   }
+
+   /**
+    * Gets the total bytes allocated by the training thread.
+    * @return allocated bytes
+    */
+   public long getAllocatedBytes() {
+      return allocatedBytes.get();
+   }
+
+   /**
+    * Gets a copy of the summed per-layer timings.
+    * @return timings, or null if no epoch reported them
+    */
+   public synchronized LayerTimings getTotalTimings() {
+      if (totalTimings == null) return null;
+      LayerTimings copy = new LayerTimings(totalTimings.getNumLayers());
+      copy.copyFrom(totalTimings);
+      return copy;
+   }
+
+   /**
+    * Getter for the most recent epoch.
+    * @return statistics of the most recent epoch, or null
+    */
+   public EpochStats getLast() {
+      return last;
+   }
+
+   /**
+    * Returns a summary of the recorded metrics.
+    * @return string representation
+    */
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("epochs=%d resets=%d allocated=%d " +
+         "wall p50=%.3fms p99=%.3fms samples/s p50=%d\n",
+         getEpochs(), getResets(), getAllocatedBytes(),
+         wallNanos.getPercentile(50) / 1e6,
+         wallNanos.getPercentile(99) / 1e6,
+         samplesPerSecond.getPercentile(50)));
+      LayerTimings timings = getTotalTimings();
+      if (timings != null) sb.append(timings);
+      return sb.toString();
+   }
+}
@@ -0,0 +1,264 @@
+package network;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges concurrent inference requests into batches.
+ * Callers block in fire while a single batching thread collects requests
+ * and fires them through the current published snapshot as one batch.
+ * A batch is fired once it is full, or once its oldest request has waited
+ * for the maximum wait time; under load batches fill immediately, and
+ * when idle a lone request waits no longer than the maximum.
+ */
+public class MicroBatcher {
+   /** Maximum number of queued requests. */
+   private static final int kQueueCapacity = 4096;
+
+   /** Publisher of the model to fire. */
+   private final ModelPublisher publisher;
+
+   /** Maximum number of requests per batch. */
+   private final int maxBatchSize;
+
+   /** Maximum time a request waits for a batch to fill, in nanoseconds. */
+   private final long maxWaitNanos;
+
+   /** Pending requests. */
+   private final BlockingQueue<Request> queue =
+      new ArrayBlockingQueue<Request>(kQueueCapacity);
+
+   /** Latency of each request, from enqueue to completion. */
+   private final Histogram latency = new Histogram();
+
+   /** Batch sizes fired. */
+   private final Histogram batchSizes = new Histogram();
+
+   /** Packed inputs of the current batch, used by the batching thread. */
+   private double[] input;
+
+   /** Batching thread. */
+   private final Thread thread;
+
+   /** Whether the batcher is running. */
+   private volatile boolean running = true;
+
+   /**
+    * Constructor.
+    * Starts the batching thread.
+    * @param publisher publisher of the model to fire
+    * @param maxBatchSize maximum number of requests per batch
+    * @param maxWaitMicros maximum time a request waits for a batch to
+    *                      fill, in microseconds
+    */
+   public MicroBatcher(ModelPublisher publisher, int maxBatchSize,
+                       long maxWaitMicros) {
+      if (maxBatchSize < 1)
+         throw new IllegalArgumentException("Invalid batch size!");
+      if (maxWaitMicros < 0)
+         throw new IllegalArgumentException("Invalid wait time!");
+      this.publisher = publisher;
+      this.maxBatchSize = maxBatchSize;
+      this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+
+      this.thread = new Thread(new Runnable() {
+         public void run() {
+            runBatches();
+         }
+      }, "micro-batcher");
+      this.thread.setDaemon(true);
+      this.thread.start();
+   }
+
+   /**
+    * Fires the model as part of a batch, blocking until the output is
+    * ready.
+    * @param request request holding the input; receives the output
+    * If interrupted while waiting, the request is taken back from the
+    * queue, or, once the batching thread owns it, allowed to complete so
+    * the request can be reused.
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public void fire(Request request) throws InterruptedException {
+      if (!running)
+         throw new IllegalStateException("Batcher has been shut down!");
+      request.error = null;
+      request.enqueued = System.nanoTime();
+      queue.put(request);
+
+      // A shutdown between the check above and the put may already have
+      //   drained the queue; take the request back if nobody else has.
+      if (!running && queue.remove(request))
+         throw new IllegalStateException("Batcher has been shut down!");
+      try {
+         request.done.acquire();
+      } catch (InterruptedException e) {
+         // A request the batching thread has taken is always released;
+         //   wait out its permit so it cannot complete a later call.
+         if (!queue.remove(request)) {
+            request.done.acquireUninterruptibly();
+         }
+         throw e;
+      }
+      if (request.error != null) throw request.error;
+   }
+
+   /**
+    * Gets the number of requests waiting for a batch.
+    * @return queue depth
+    */
+   public int getQueueDepth() {
+      return queue.size();
+   }
+
+   /**
+    * Getter for request latencies, in nanoseconds.
+    * @return histogram of latencies
+    */
+   public Histogram getLatency() {
+      return latency;
+   }
+
+   /**
+    * Getter for fired batch sizes.
+    * @return histogram of batch sizes
+    */
+   public Histogram getBatchSizes() {
+      return batchSizes;
+   }
+
+   /**
+    * Stops the batching thread.
+    * Requests still queued or in the batch being collected fail with an
+    * exception.
+    */
+   public void shutdown() {
+      running = false;
+      thread.interrupt();
+   }
+
+   /**
+    * Collects and fires batches until shut down.
+    */
+   private void runBatches() {
+      Request[] batch = new Request[maxBatchSize];
+      int count = 0;
+
+      try {
+         while (running) {
+            // Wait for the first request, then fill until the batch is
+            //   full or the first request has waited long enough.
+            batch[0] = queue.take();
+            count = 1;
+            long deadline = batch[0].enqueued + maxWaitNanos;
+            while (count < maxBatchSize) {
+               long remaining = deadline - System.nanoTime();
+               Request next = (remaining > 0)
+                  ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                  : queue.poll();
+               if (next == null) break;
+               batch[count++] = next;
+            }
+
+            try {
+               fireBatch(batch, count);
+            } catch (RuntimeException e) {
+               for (int i = 0; i < count; ++i) {
+                  if (batch[i].error == null) batch[i].error = e;
+               }
+            }
+
+            // Release callers.
+            long now = System.nanoTime();
+            for (int i = 0; i < count; ++i) {
+               latency.record(now - batch[i].enqueued);
+               batch[i].done.release();
+               batch[i] = null;
+            }
+            count = 0;
+         }
+      } catch (InterruptedException e) {
+         // Shut down.
+      } finally {
+         // Fail the batch in flight and anything still waiting.
+         for (int i = 0; i < count; ++i) {
+            if (batch[i] == null) continue;
+            batch[i].error = new IllegalStateException("Batcher shut down!");
+            batch[i].done.release();
+         }
+         Request request;
+         while ((request = queue.poll()) != null) {
+            request.error = new IllegalStateException("Batcher shut down!");
+            request.done.release();
+         }
+      }
+   }
+
+   /**
+    * Fires a batch of requests against the current snapshot.
+    * @param batch requests
+    * @param count number of requests
+    */
+   private void fireBatch(Request[] batch, int count) {
+      // Fire the whole batch against one snapshot.
+      ModelSnapshot snapshot = publisher.get();
+      if (snapshot == null)
+         throw new IllegalStateException("No model has been published!");
+      int[] layerSizes = snapshot.getLayerSizes();
+      int numInputs = layerSizes[0];
+      int numOutputs = layerSizes[layerSizes.length - 1];
+      if (input == null || input.length != maxBatchSize * numInputs) {
+         input = new double[maxBatchSize * numInputs];
+      }
+
+      // Pack inputs, skipping malformed requests.
+      int rows = 0;
+      for (int i = 0; i < count; ++i) {
+         Request request = batch[i];
+         if (request.input.length != numInputs) {
+            request.error = new IllegalArgumentException(
+               "Expected " + numInputs + " inputs!");
+            continue;
+         }
+         System.arraycopy(request.input, 0, input, rows * numInputs,
+                          numInputs);
+         ++rows;
+      }
+      double[] output = snapshot.fireBatch(input, rows);
+      batchSizes.record(count);
+
+      // Unpack outputs.
+      for (int i = 0, row = 0; i < count; ++i) {
+         Request request = batch[i];
+         if (request.error != null) continue;
+         if (request.output == null ||
+             request.output.length != numOutputs) {
+            request.output = new double[numOutputs];
+         }
+         System.arraycopy(output, row * numOutputs, request.output,
+                          0, numOutputs);
+         ++row;
+      }
+   }
+
+   /**
+    * Represents an inference request.
+    * A request may be reused for any number of sequential calls to fire,
+    * so a connection can serve requests without allocating.
+    */
+   public static class Request {
+      /** Input signals. */
+      public double[] input;
+      /** Output signals, set when the request completes. */
+      public double[] output;
+
+      /** Error raised for this request, or null. */
+      private RuntimeException error;
+      /** Time the request was queued. */
+      private long enqueued;
+      /** Released when the request completes. */
+      private final Semaphore done = new Semaphore(0);
+   }
+}
@@ -0,0 +1,19 @@
+package network;
+
+/**
+ * Represents a trained model that can be fired for inference.
+ */
+public interface Model {
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   int[] getLayerSizes();
+
+   /**
+    * Fires the model and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   double[] fire(double[] input);
+}
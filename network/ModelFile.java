@@ -0,0 +1,324 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Reads and writes the binary model format.
+ *
+ * All values are little-endian. The file starts with a header:
+ *   int magic, int version, int loss code, int number of layer sizes,
+ *   then each layer size, then the activation code of each neuron layer,
+ *   padded with zeros to a multiple of 8 bytes.
+ * Version 2 files hold zero in place of the loss code and are read with
+ * squared error. Version 1 files also have no activation codes; that
+ * field holds the sigmoid's code, which every layer uses.
+ * Each layer follows as a block of doubles: its weights (size x inputs,
+ * row-major), then its biases. Because the header is padded, every block
+ * is 8-byte aligned and can be read straight from a mapped buffer.
+ */
+public class ModelFile {
+   /** File magic ("CNNM" in little-endian order). */
+   public static final int kMagic = 0x4D4E4E43;
+
+   /** Current format version. */
+   public static final int kVersion = 3;
+
+   /** Version without a loss code. */
+   private static final int kVersionNoLoss = 2;
+
+   /** Version without per-layer activations. */
+   private static final int kVersionSigmoid = 1;
+
+   /**
+    * Seed of the weight initialization of loaded networks, since files do
+    * not store one.
+    */
+   private static final long kLoadSeed = 0;
+
+   /** Size of the buffer used to stream weights to disk. */
+   private static final int kWriteBufferSize = 1 << 16;
+
+   /**
+    * Static class.
+    */
+   private ModelFile() { }
+
+   /**
+    * Writes a network to a model file.
+    * @param network network to write
+    * @param path file to write to
+    * @throws IOException if the file cannot be written
+    */
+   public static void write(Network network, Path path) throws IOException {
+      int[] layerSizes = network.getLayerSizes();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(
+         Math.max(kWriteBufferSize, headerSize(layerSizes.length, kVersion)))
+         .order(ByteOrder.LITTLE_ENDIAN);
+
+      FileChannel channel = FileChannel.open(path,
+         StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+         StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+         // Write header.
+         buffer.putInt(kMagic);
+         buffer.putInt(kVersion);
+         buffer.putInt(network.getLoss().getCode());
+         buffer.putInt(layerSizes.length);
+         for (int i = 0; i < layerSizes.length; ++i) {
+            buffer.putInt(layerSizes[i]);
+         }
+         for (int i = 0; i < network.getNumLayers(); ++i) {
+            buffer.putInt(network.getLayer(i).getActivation().getCode());
+         }
+         while (buffer.position() % 8 != 0) {
+            buffer.put((byte) 0);
+         }
+
+         // Write weight and bias blocks.
+         for (int i = 0; i < network.getNumLayers(); ++i) {
+            Layer layer = network.getLayer(i);
+            writeDoubles(channel, buffer, layer.getWeights());
+            writeDoubles(channel, buffer, layer.getBiases());
+         }
+         flush(channel, buffer);
+      } finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Reads a network from a model file, copying weights onto the heap.
+    * @param path file to read from
+    * @return network
+    * @throws IOException if the file cannot be read or is invalid
+    */
+   public static Network read(Path path) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+         Header header = readHeader(channel);
+         int[] layerSizes = header.layerSizes;
+         ArrayList<Layer> layers = new ArrayList<Layer>();
+         long offset = header.size;
+
+         for (int i = 1; i < layerSizes.length; ++i) {
+            double[] weights = new double[layerSizes[i] * layerSizes[i-1]];
+            double[] biases = new double[layerSizes[i]];
+
+            // Copy the layer's block in bulk.
+            mapBlock(channel, offset, weights.length + biases.length)
+               .get(weights).get(biases);
+            offset += 8L * (weights.length + biases.length);
+
+            Layer layer = new Layer(layerSizes[i-1], weights, biases);
+            layer.setActivation(header.activations[i-1]);
+            layers.add(layer);
+         }
+         Network network = new Network(layerSizes, layers, kLoadSeed);
+         network.setLoss(header.loss);
+         return network;
+      } finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Memory-maps a model file for inference.
+    * Weights are read straight from the mapped file without copying.
+    * @param path file to map
+    * @return mapped model
+    * @throws IOException if the file cannot be read or is invalid
+    */
+   public static MappedModel map(Path path) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+         Header header = readHeader(channel);
+         int[] layerSizes = header.layerSizes;
+         int numLayers = layerSizes.length - 1;
+         DoubleBuffer[] weights = new DoubleBuffer[numLayers];
+         DoubleBuffer[] biases = new DoubleBuffer[numLayers];
+         long offset = header.size;
+
+         for (int i = 0; i < numLayers; ++i) {
+            int numWeights = layerSizes[i + 1] * layerSizes[i];
+            DoubleBuffer block =
+               mapBlock(channel, offset, numWeights + layerSizes[i + 1]);
+
+            // Split the block into weight and bias views.
+            block.limit(numWeights);
+            weights[i] = block.slice();
+            block.limit(block.capacity()).position(numWeights);
+            biases[i] = block.slice();
+
+            offset += 8L * (numWeights + layerSizes[i + 1]);
+         }
+
+         // Mappings remain valid after the channel is closed.
+         return new MappedModel(layerSizes, weights, biases,
+                                header.activations);
+      } finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Reads and validates the header of a model file.
+    * @param channel file channel
+    * @return header
+    * @throws IOException if the header is invalid
+    */
+   private static Header readHeader(FileChannel channel) throws IOException {
+      ByteBuffer fixed = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, fixed, 0);
+
+      if (fixed.getInt() != kMagic)
+         throw new IOException("Invalid model file!");
+      int version = fixed.getInt();
+      if (version != kVersion && version != kVersionNoLoss &&
+          version != kVersionSigmoid)
+         throw new IOException("Unsupported model file version!");
+
+      // Older versions hold zero here: squared error, and for version 1
+      //   the sigmoid's code.
+      int reserved = fixed.getInt();
+      if (version != kVersion && reserved != 0)
+         throw new IOException("Unsupported model activation!");
+      Loss loss = (version == kVersion)
+         ? Loss.fromCode(reserved)
+         : Loss.kSquaredError;
+      if (loss == null)
+         throw new IOException("Unsupported model loss!");
+
+      int numSizes = fixed.getInt();
+      if (numSizes < 2 || numSizes > 1024)
+         throw new IOException("Invalid model file!");
+
+      // Read layer sizes, then activation codes if present.
+      int numCodes = (version == kVersionSigmoid) ? 0 : numSizes - 1;
+      ByteBuffer rest = ByteBuffer.allocate(4 * (numSizes + numCodes))
+         .order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, rest, 16);
+
+      Header header = new Header();
+      header.layerSizes = new int[numSizes];
+      header.activations = new Activation[numSizes - 1];
+      header.size = headerSize(numSizes, version);
+
+      long expectedSize = header.size;
+      for (int i = 0; i < numSizes; ++i) {
+         header.layerSizes[i] = rest.getInt();
+         if (header.layerSizes[i] < 1)
+            throw new IOException("Invalid model file!");
+         if (i > 0) {
+            expectedSize += 8L * header.layerSizes[i] *
+                            (header.layerSizes[i-1] + 1);
+         }
+      }
+      for (int i = 0; i < numSizes - 1; ++i) {
+         header.activations[i] = (numCodes == 0)
+            ? Activation.kSigmoid
+            : Activation.fromCode(rest.getInt());
+         if (header.activations[i] == null)
+            throw new IOException("Unsupported model activation!");
+      }
+      if (!loss.supports(header.activations[numSizes - 2]))
+         throw new IOException("Unsupported model loss!");
+      header.loss = loss;
+      if (channel.size() < expectedSize)
+         throw new IOException("Truncated model file!");
+      return header;
+   }
+
+   /**
+    * Gets the size of the padded header.
+    * @param numSizes number of layer sizes
+    * @param version format version
+    * @return header size in bytes
+    */
+   private static int headerSize(int numSizes, int version) {
+      int numCodes = (version == kVersionSigmoid) ? 0 : numSizes - 1;
+      return (16 + 4 * (numSizes + numCodes) + 7) & ~7;
+   }
+
+   /**
+    * Maps a block of doubles from a file.
+    * @param channel file channel
+    * @param offset byte offset of the block
+    * @param length number of doubles
+    * @return little-endian view of the block
+    * @throws IOException if the block cannot be mapped
+    */
+   private static DoubleBuffer mapBlock(FileChannel channel, long offset,
+                                        int length) throws IOException {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * length)
+         .order(ByteOrder.LITTLE_ENDIAN)
+         .asDoubleBuffer();
+   }
+
+   /**
+    * Fills a buffer from a file position.
+    * @param channel file channel
+    * @param buffer buffer to fill
+    * @param position file position
+    * @throws IOException if the file ends first
+    */
+   private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                 long position) throws IOException {
+      while (buffer.hasRemaining()) {
+         int read = channel.read(buffer, position);
+         if (read < 0) throw new IOException("Truncated model file!");
+         position += read;
+      }
+      buffer.flip();
+   }
+
+   /**
+    * Streams doubles to a file through a buffer.
+    * @param channel file channel
+    * @param buffer write buffer
+    * @param values values to write
+    * @throws IOException if the file cannot be written
+    */
+   private static void writeDoubles(FileChannel channel, ByteBuffer buffer,
+                                    double[] values) throws IOException {
+      for (int i = 0; i < values.length; ++i) {
+         if (buffer.remaining() < 8) flush(channel, buffer);
+         buffer.putDouble(values[i]);
+      }
+   }
+
+   /**
+    * Writes out and clears a buffer.
+    * @param channel file channel
+    * @param buffer write buffer
+    * @throws IOException if the file cannot be written
+    */
+   private static void flush(FileChannel channel, ByteBuffer buffer)
+         throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+
+   /**
+    * Holds the contents of a model file header.
+    */
+   private static class Header {
+      /** Layer sizes. */
+      int[] layerSizes;
+      /** Activation function of each neuron layer. */
+      Activation[] activations;
+      /** Loss function minimized by learning. */
+      Loss loss;
+      /** Size of the padded header in bytes. */
+      int size;
+   }
+}
@@ -0,0 +1,98 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes model snapshots to inference threads.
+ * A trainer teaches a private network and publishes a snapshot of it when
+ * ready; readers always fire the latest snapshot. Swapping is a single
+ * atomic reference update, so readers never lock, never see a partially
+ * updated model, and keep firing the old snapshot until they next read
+ * the reference.
+ */
+public class ModelPublisher implements Model {
+   /** Current snapshot, or null if nothing has been published. */
+   private final AtomicReference<ModelSnapshot> current =
+      new AtomicReference<ModelSnapshot>();
+
+   /**
+    * Constructor.
+    * Nothing is published until publish is called.
+    */
+   public ModelPublisher() { }
+
+   /**
+    * Network constructor.
+    * Publishes an initial snapshot of the network.
+    * @param network network to publish
+    */
+   public ModelPublisher(Network network) {
+      publish(network);
+   }
+
+   /**
+    * Publishes a snapshot of a network's current weights.
+    * The snapshot is copied on the calling thread, which must be the only
+    * thread changing the network.
+    * @param network network to publish
+    * @return published snapshot
+    */
+   public ModelSnapshot publish(Network network) {
+      while (true) {
+         ModelSnapshot previous = current.get();
+         long version = (previous == null) ? 1 : previous.getVersion() + 1;
+         ModelSnapshot snapshot = new ModelSnapshot(network, version);
+
+         // Retry if another thread published first, so versions stay in
+         //   publication order.
+         if (current.compareAndSet(previous, snapshot)) return snapshot;
+      }
+   }
+
+   /**
+    * Gets the current snapshot.
+    * Callers firing several inputs against one model version should fire
+    * the returned snapshot rather than this publisher.
+    * @return current snapshot, or null if nothing has been published
+    */
+   public ModelSnapshot get() {
+      return current.get();
+   }
+
+   /**
+    * Gets the current version number.
+    * @return current version, or 0 if nothing has been published
+    */
+   public long getVersion() {
+      ModelSnapshot snapshot = current.get();
+      return (snapshot == null) ? 0 : snapshot.getVersion();
+   }
+
+   /**
+    * Getter for layer sizes of the current snapshot.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return getPublished().getLayerSizes();
+   }
+
+   /**
+    * Fires the current snapshot and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      return getPublished().fire(input);
+   }
+
+   /**
+    * Gets the current snapshot, which must exist.
+    * @return current snapshot
+    */
+   private ModelSnapshot getPublished() {
+      ModelSnapshot snapshot = current.get();
+      if (snapshot == null)
+         throw new IllegalStateException("No model has been published!");
+      return snapshot;
+   }
+}
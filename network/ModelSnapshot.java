@@ -0,0 +1,144 @@
+package network;
+
+import java.util.ArrayList;
+
+/**
+ * Represents an immutable, versioned copy of a network's weights.
+ * A snapshot's weights are copied when it is taken and never change, so
+ * it may be fired from any number of threads without locking while the
+ * network it was taken from continues to learn.
+ */
+public class ModelSnapshot implements Model {
+   /** Layer sizes. */
+   private final int[] layerSizes;
+
+   /** Weight matrix of each layer (size x inputs, row-major). */
+   private final double[][] weights;
+
+   /** Bias vector of each layer. */
+   private final double[][] biases;
+
+   /** Activation function of each layer. */
+   private final Activation[] activations;
+
+   /** Version number. */
+   private final long version;
+
+   /** Seed of the network's weight initialization generator. */
+   private final long seed;
+
+   /**
+    * Constructor.
+    * Copies the network's current weights and biases.
+    * @param network network to take a snapshot of
+    * @param version version number
+    */
+   public ModelSnapshot(Network network, long version) {
+      int numLayers = network.getNumLayers();
+      this.layerSizes = network.getLayerSizes().clone();
+      this.weights = new double[numLayers][];
+      this.biases = new double[numLayers][];
+      this.activations = new Activation[numLayers];
+      for (int i = 0; i < numLayers; ++i) {
+         Layer layer = network.getLayer(i);
+         weights[i] = layer.getWeights().clone();
+         biases[i] = layer.getBiases().clone();
+         activations[i] = layer.getActivation();
+      }
+      this.version = version;
+      this.seed = network.getSeed();
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes.clone();
+   }
+
+   /**
+    * Getter for version number.
+    * @return version number
+    */
+   public long getVersion() {
+      return version;
+   }
+
+   /**
+    * Fires the model and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      // Validate input size.
+      if (input.length != layerSizes[0])
+         throw new RuntimeException("Model fired with improper input!");
+
+      // Thread input through layers.
+      for (int l = 0; l < weights.length; ++l) {
+         double[] layerWeights = weights[l];
+         double[] layerBiases = biases[l];
+         int numInputs = layerSizes[l];
+         double[] output = new double[layerSizes[l + 1]];
+
+         // Calculate activation inputs.
+         for (int n = 0, row = 0; n < output.length; ++n, row += numInputs) {
+            output[n] = layerBiases[n] +
+               Kernels.dot(input, 0, layerWeights, row, numInputs);
+         }
+
+         // Calculate signal outputs.
+         activations[l].apply(output, 0, output.length);
+         input = output;
+      }
+      return input;
+   }
+
+   /**
+    * Fires the model for a packed batch of inputs.
+    * Each layer is run as a matrix multiply over the batch.
+    * @param input input signals (rows x inputs, row-major)
+    * @param rows number of input vectors
+    * @return output signals (rows x outputs, row-major)
+    */
+   public double[] fireBatch(double[] input, int rows) {
+      // Validate input size.
+      if (input.length < rows * layerSizes[0])
+         throw new RuntimeException("Model fired with improper input!");
+
+      // Thread input through layers.
+      for (int l = 0; l < weights.length; ++l) {
+         int size = layerSizes[l + 1];
+         double[] output = new double[rows * size];
+
+         // Start each row from the biases.
+         for (int r = 0; r < rows; ++r) {
+            System.arraycopy(biases[l], 0, output, r * size, size);
+         }
+
+         // Calculate activation inputs, then signal outputs.
+         Matrix.multiplyTransposed(input, 0, rows, layerSizes[l],
+                                   weights[l], size, output);
+         activations[l].applyBatch(output, rows, size);
+         input = output;
+      }
+      return input;
+   }
+
+   /**
+    * Converts this snapshot to a network that can be trained further.
+    * The network is seeded like the network the snapshot was taken from.
+    * @return network with a copy of this snapshot's weights
+    */
+   public Network toNetwork() {
+      ArrayList<Layer> layers = new ArrayList<Layer>();
+      for (int i = 0; i < weights.length; ++i) {
+         Layer layer = new Layer(layerSizes[i], weights[i].clone(),
+                                 biases[i].clone());
+         layer.setActivation(activations[i]);
+         layers.add(layer);
+      }
+      return new Network(layerSizes.clone(), layers, seed);
+   }
+}
@@ -0,0 +1,71 @@
+package network;
+
+/**
+ * Gradient descent with classical or Nesterov momentum.
+ * v[i] = momentum * v[i] + g[i]
+ * params[i] += learningRate * v[i]
+ * With Nesterov momentum, the step looks ahead along the new velocity:
+ * params[i] += learningRate * (momentum * v[i] + g[i])
+ */
+public class MomentumOptimizer implements Optimizer {
+   /** Learning rate. */
+   private final double learningRate;
+   /** Momentum coefficient. */
+   private final double momentum;
+   /** Whether to use Nesterov momentum. */
+   private final boolean nesterov;
+
+   /** Velocity of each parameter. */
+   private final ParameterState velocity = new ParameterState();
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate
+    * @param momentum momentum coefficient, typically 0.9
+    * @param nesterov whether to use Nesterov momentum
+    */
+   public MomentumOptimizer(double learningRate, double momentum,
+                            boolean nesterov) {
+      this.learningRate = learningRate;
+      this.momentum = momentum;
+      this.nesterov = nesterov;
+   }
+
+   /**
+    * Does nothing; the velocity is updated per slot.
+    */
+   public void step() { }
+
+   /**
+    * Accumulates the gradient into the slot's velocity and steps along it.
+    * @param slot parameter slot index
+    * @param params parameters to update
+    * @param gradients gradient for each parameter
+    * @param gradientScale scale applied to each gradient
+    */
+   public void update(int slot, double[] params, double[] gradients,
+                      double gradientScale) {
+      double[] v = velocity.get(slot, params.length);
+      for (int i = 0; i < params.length; ++i) {
+         double g = gradientScale * gradients[i];
+         double vi = momentum * v[i] + g;
+         v[i] = vi;
+         params[i] += learningRate * (nesterov ? momentum * vi + g : vi);
+      }
+   }
+
+   /**
+    * Zeroes the velocity of every slot.
+    */
+   public void reset() {
+      velocity.clear();
+   }
+
+   /**
+    * Creates an optimizer with the same settings and zero velocity.
+    * @return fresh optimizer
+    */
+   public Optimizer copy() {
+      return new MomentumOptimizer(learningRate, momentum, nesterov);
+   }
+}
@@ -1,17 +1,22 @@
 package network;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Random;
 
 /**
  * Represents a neural network.
  */
-public class Network {
+public class Network implements Model {
+   /** Maximum number of input vectors fired through the layers at once. */
+   private static final int kBatchRows = 256;
+
    /** Layer sizes. */
    private int[] layerSizes;
 
-   /** Network neuron layers. */
-   private ArrayList<Neuron[]> layers;
+   /** Network layers. */
+   private ArrayList<Layer> layers;
 
    /** Number of inputs to the network. */
    private int numInputs;
@@ -19,56 +24,178 @@ public class Network {
    /** Learning constant. */
    private double learningConstant = 0.1;
 
+   /**
+    * Optimizer applying gradients, or null to step along the gradients
+    * with the learning constant.
+    */
+   private Optimizer optimizer;
+
+   /** Loss function minimized by learning. */
+   private Loss loss = Loss.kSquaredError;
+
+   /** Seed of the weight initialization generator. */
+   private final long seed;
+
+   /** Random number generator for weight initialization. */
+   private final Random random;
+
+   /** Workspace used by calls that do not supply their own. */
+   private Workspace workspace;
+
    /**
     * Constructor.
     * @param layerSizes number of neurons per layer (index 0 is input size)
     */
    public Network(int[] layerSizes) {
+      this(layerSizes, new Random().nextLong());
+   }
+
+   /**
+    * Seeded constructor.
+    * Networks built with the same seed start with the same weights, and
+    * are reset to the same sequence of weights.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param seed random seed for weight initialization
+    */
+   public Network(int[] layerSizes, long seed) {
       this.layerSizes = layerSizes;
       this.numInputs = layerSizes[0];
-      layers = new ArrayList<Neuron[]>();
-
-      // Create each layer
-      for (int i = 1; i < layerSizes.length; ++i) {
-         Neuron[] layer = new Neuron[layerSizes[i]];
-
-         // Initialize neurons using previous layer size.
-         for (int j = 0; j < layer.length; ++j) {
-            layer[j] = new Neuron(layerSizes[i-1]);
-         }
-
-         layers.add(layer);
-      }
+      this.seed = seed;
+      this.random = new Random(seed);
+      reset();
    }
 
    /**
     * Explicit constructor.
-    * Sets layers.
-    * @param layers neuron layers
+    * Sets layers. Resets draw weights from a generator seeded with the
+    * given seed.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @param layers layers
+    * @param seed random seed for weight initialization
     */
-   private Network(ArrayList<Neuron[]> layers) {
+   Network(int[] layerSizes, ArrayList<Layer> layers, long seed) {
+      this.layerSizes = layerSizes;
+      this.numInputs = layerSizes[0];
+      this.seed = seed;
+      this.random = new Random(seed);
       this.layers = layers;
    }
 
+   /**
+    * Getter for the seed of the weight initialization generator.
+    * @return random seed
+    */
+   public long getSeed() {
+      return seed;
+   }
+
    /**
     * Resets the network.
     */
    public void reset() {
-      layers = new ArrayList<Neuron[]>();
+      ArrayList<Layer> previous = layers;
+      layers = new ArrayList<Layer>();
+      if (optimizer != null) optimizer.reset();
 
-      // Create each layer
+      // Create each layer using previous layer size.
+      // Activations and pruning are kept across resets.
       for (int i = 1; i < layerSizes.length; ++i) {
-         Neuron[] layer = new Neuron[layerSizes[i]];
-
-         // Initialize neurons using previous layer size.
-         for (int j = 0; j < layer.length; ++j) {
-            layer[j] = new Neuron(layerSizes[i-1]);
+         Layer layer = new Layer(layerSizes[i-1], layerSizes[i], random);
+         if (previous != null) {
+            layer.setActivation(previous.get(i-1).getActivation());
+            layer.copyPruning(previous.get(i-1));
          }
-
          layers.add(layer);
       }
    }
 
+   /**
+    * Sets the activation function of a layer.
+    * @param layerIndex layer index
+    * @param activation activation
+    */
+   public void setActivation(int layerIndex, Activation activation) {
+      if (layerIndex == layers.size() - 1 && !loss.supports(activation))
+         throw new IllegalArgumentException("Output activation " +
+            activation + " is not supported by " + loss + " loss!");
+      layers.get(layerIndex).setActivation(activation);
+   }
+
+   /**
+    * Sets the activation function of every hidden layer.
+    * @param activation activation
+    */
+   public void setHiddenActivation(Activation activation) {
+      for (int i = 0; i < layers.size() - 1; ++i) {
+         layers.get(i).setActivation(activation);
+      }
+   }
+
+   /**
+    * Sets the loss function minimized by learning.
+    * @param loss loss
+    */
+   public void setLoss(Loss loss) {
+      Activation output = layers.get(layers.size() - 1).getActivation();
+      if (!loss.supports(output))
+         throw new IllegalArgumentException("Output activation " +
+            output + " is not supported by " + loss + " loss!");
+      this.loss = loss;
+   }
+
+   /**
+    * Getter for loss function.
+    * @return loss
+    */
+   public Loss getLoss() {
+      return loss;
+   }
+
+   /**
+    * Prunes every weight in the network whose magnitude is at most a
+    * threshold.
+    * Pruned weights are held at zero by later learning, so the network
+    * can be fine-tuned with a trainer afterwards.
+    * @param threshold largest magnitude to prune
+    * @return number of pruned weights in the network
+    */
+   public int prune(double threshold) {
+      int count = 0;
+      for (int i = 0; i < layers.size(); ++i) {
+         count += layers.get(i).prune(threshold);
+      }
+      return count;
+   }
+
+   /**
+    * Prunes the smallest weights of each layer until a fraction of each
+    * layer is pruned.
+    * Pruned weights are held at zero by later learning.
+    * @param sparsity fraction of each layer's weights to prune, in [0, 1)
+    * @return number of pruned weights in the network
+    */
+   public int pruneToSparsity(double sparsity) {
+      int count = 0;
+      for (int i = 0; i < layers.size(); ++i) {
+         count += layers.get(i).pruneToSparsity(sparsity);
+      }
+      return count;
+   }
+
+   /**
+    * Gets the fraction of the network's weights that are pruned.
+    * @return fraction of pruned weights
+    */
+   public double getSparsity() {
+      long pruned = 0;
+      long total = 0;
+      for (int i = 0; i < layers.size(); ++i) {
+         pruned += layers.get(i).getNumPruned();
+         total += layers.get(i).getWeights().length;
+      }
+      return (double) pruned / total;
+   }
+
    /**
     * Sets the learning constant.
     * @param learningConstant new learning constant
@@ -77,6 +204,57 @@ public class Network {
       this.learningConstant = learningConstant;
    }
 
+   /**
+    * Sets the optimizer used to apply gradients.
+    * The optimizer's own learning rate replaces the learning constant.
+    * @param optimizer optimizer, or null to step along the gradients with
+    *                  the learning constant
+    */
+   public void setOptimizer(Optimizer optimizer) {
+      this.optimizer = optimizer;
+   }
+
+   /**
+    * Getter for optimizer.
+    * @return optimizer, or null if the learning constant is used
+    */
+   public Optimizer getOptimizer() {
+      return optimizer;
+   }
+
+   /**
+    * Getter for learning constant.
+    * @return learning constant
+    */
+   public double getLearningConstant() {
+      return learningConstant;
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes;
+   }
+
+   /**
+    * Gets the number of neuron layers (excluding the input layer).
+    * @return number of layers
+    */
+   public int getNumLayers() {
+      return layers.size();
+   }
+
+   /**
+    * Gets a neuron layer.
+    * @param layerIndex layer index
+    * @return layer
+    */
+   public Layer getLayer(int layerIndex) {
+      return layers.get(layerIndex);
+   }
+
    /**
     * Fires the neural network and returns output.
     * @param input input signals
@@ -87,39 +265,234 @@ public class Network {
       if (input.length != numInputs)
          throw new RuntimeException("Network fired with improper input!");
 
-      double[] output = null;
-
       // Thread input through network layers.
-      for (Neuron[] layer : layers) {
-         output = new double[layer.length];
+      for (int i = 0; i < layers.size(); ++i) {
+         input = layers.get(i).fire(input);
+      }
 
-         // Process input and catch output.
-         for (int i = 0; i < layer.length; ++i) {
-            output[i] = layer[i].fire(input);
-         }
+      return input;
+   }
+
+   /**
+    * Fires the neural network using a workspace.
+    * Does not allocate; the returned array belongs to the workspace and is
+    * overwritten by the next pass.
+    * @param input input signals
+    * @param workspace workspace to fire in
+    * @return output signals
+    */
+   public double[] fire(double[] input, Workspace workspace) {
+      // Validate input size.
+      if (input.length != numInputs)
+         throw new RuntimeException("Network fired with improper input!");
+
+      return fire(input, 0, workspace);
+   }
+
+   /**
+    * Fires the neural network from a row of a larger array using a
+    * workspace.
+    * Does not allocate; the returned array belongs to the workspace and is
+    * overwritten by the next pass.
+    * @param input array containing input signals
+    * @param offset offset of the input signals within the array
+    * @param workspace workspace to fire in
+    * @return output signals
+    */
+   public double[] fire(double[] input, int offset, Workspace workspace) {
+      checkWorkspace(workspace);
+      LayerTimings timings = workspace.timings;
+      long start = (timings != null) ? System.nanoTime() : 0;
 
-         // Set up input for next layer.
+      // Fire the first layer from the row.
+      double[] output = workspace.activations[0];
+      layers.get(0).fire(input, offset, output);
+
+      // Thread output through remaining layers.
+      for (int i = 1; i < layers.size(); ++i) {
+         if (timings != null) {
+            start = recordTime(timings.forwardNanos, i - 1, start);
+         }
          input = output;
+         output = workspace.activations[i];
+         layers.get(i).fire(input, output);
+      }
+      if (timings != null) {
+         recordTime(timings.forwardNanos, layers.size() - 1, start);
       }
 
       return output;
    }
 
+   /**
+    * Validates that a workspace was created for this network's shape.
+    * @param workspace workspace to check
+    */
+   private void checkWorkspace(Workspace workspace) {
+      if (!workspace.fits(layerSizes))
+         throw new IllegalArgumentException(
+            "Workspace does not fit the network!");
+   }
+
+   /**
+    * Validates that a packed dataset's rows match the network's inputs and
+    * outputs, since its matrices are read without per-row checks.
+    * @param dataset packed dataset to check
+    */
+   private void checkDataset(PackedDataset dataset) {
+      if (dataset.getNumInputs() != numInputs ||
+          dataset.getNumOutputs() != getNumOutputs())
+         throw new IllegalArgumentException(
+            "Dataset does not fit the network!");
+   }
+
+   /**
+    * Validates that a test case matches the network's inputs and outputs,
+    * since learning reads its arrays without bounds beyond those sizes.
+    * @param test test case to check
+    */
+   private void checkTestCase(TestCase test) {
+      if (test.inputs.length != numInputs)
+         throw new RuntimeException("Network fired with improper input!");
+      if (test.outputs.length != getNumOutputs())
+         throw new IllegalArgumentException(
+            "Test case has improper output size!");
+   }
+
+   /**
+    * Validates that a workspace holds no uncommitted batch.
+    * Learning from a single test case overwrites the workspace's
+    * gradients, which would silently discard a pending batch.
+    * @param workspace workspace to check
+    */
+   private static void checkNoBatch(Workspace workspace) {
+      if (workspace.batchCount != 0)
+         throw new IllegalStateException(
+            "Workspace holds an uncommitted batch!");
+   }
+
+   /**
+    * Fires the neural network for a batch of inputs.
+    * Each layer is run as a matrix multiply over the batch.
+    * @param inputs input signals for each sample
+    * @return output signals for each sample
+    */
+   public double[][] fireBatch(double[][] inputs) {
+      int numOutputs = getNumOutputs();
+      double[][] outputs = new double[inputs.length][numOutputs];
+
+      for (int from = 0; from < inputs.length; from += kBatchRows) {
+         int to = Math.min(from + kBatchRows, inputs.length);
+         double[] output =
+            fireBatch(Matrix.pack(inputs, from, to, numInputs), to - from);
+
+         // Unpack outputs.
+         for (int i = from; i < to; ++i) {
+            System.arraycopy(output, (i - from) * numOutputs,
+               outputs[i], 0, numOutputs);
+         }
+      }
+      return outputs;
+   }
+
+   /**
+    * Fires the neural network for the inputs of a test suite.
+    * @param tests test suite
+    * @return output signals (tests x outputs, row-major)
+    */
+   public double[] fireBatch(ArrayList<TestCase> tests) {
+      int numOutputs = getNumOutputs();
+      double[] outputs = new double[tests.size() * numOutputs];
+      double[] input = new double[Math.min(kBatchRows, tests.size()) * numInputs];
+
+      for (int from = 0; from < tests.size(); from += kBatchRows) {
+         int to = Math.min(from + kBatchRows, tests.size());
+
+         // Pack inputs.
+         for (int i = from; i < to; ++i) {
+            double[] testInputs = tests.get(i).inputs;
+            if (testInputs.length != numInputs)
+               throw new RuntimeException("Network fired with improper input!");
+            System.arraycopy(testInputs, 0, input, (i - from) * numInputs,
+               numInputs);
+         }
+
+         double[] output = fireBatch(input, to - from);
+         System.arraycopy(output, 0, outputs, from * numOutputs,
+            (to - from) * numOutputs);
+      }
+      return outputs;
+   }
+
+   /**
+    * Fires the neural network for a packed batch of inputs.
+    * @param input input signals (rows x inputs, row-major)
+    * @param rows number of input vectors
+    * @return output signals (rows x outputs, row-major)
+    */
+   public double[] fireBatch(double[] input, int rows) {
+      return fireBatch(input, 0, rows);
+   }
+
+   /**
+    * Fires the neural network for a packed batch of inputs held within a
+    * larger array.
+    * @param input array containing input signals (rows x inputs, row-major)
+    * @param offset offset of the first input signal within the array
+    * @param rows number of input vectors
+    * @return output signals (rows x outputs, row-major)
+    */
+   public double[] fireBatch(double[] input, int offset, int rows) {
+      // Thread input through network layers.
+      for (int i = 0; i < layers.size(); ++i) {
+         Layer layer = layers.get(i);
+         double[] output = new double[rows * layer.size()];
+         layer.fireBatch(input, offset, rows, output);
+         input = output;
+         offset = 0;
+      }
+      return input;
+   }
+
+   /**
+    * Gets the number of outputs of the network.
+    * @return number of outputs
+    */
+   public int getNumOutputs() {
+      return layerSizes[layerSizes.length - 1];
+   }
+
+   /**
+    * Creates an empty evaluation whose test error is this network's loss.
+    * @return evaluation
+    */
+   public Evaluation createEvaluation() {
+      return new Evaluation(getNumOutputs(), loss,
+                            layers.get(layers.size() - 1).getActivation());
+   }
+
+   /**
+    * Creates a workspace sized for this network.
+    * @return workspace
+    */
+   public Workspace createWorkspace() {
+      return new Workspace(layerSizes);
+   }
+
    /**
     * Gets a table of weights for the neurons in a given layer.
     * @param layerIndex layer index
-    * @return weights table
+    * @return weights table (indexed by input, then neuron)
     */
    public double[][] getLayerWeights(int layerIndex) {
-      Neuron[] previousLayer = layers.get(layerIndex - 1);
-      Neuron[] currLayer = layers.get(layerIndex);
-      double[][] weights = new double[previousLayer.length][currLayer.length];
-
-      for (int c = 0; c < currLayer.length; ++c) {
-         Neuron neuron = currLayer[c];
-         double[] currWeights = neuron.getWeights();
-         for (int p = 0; p < previousLayer.length; ++p) {
-            weights[p][c] = currWeights[p];
+      Layer layer = layers.get(layerIndex);
+      int numInputs = layer.getNumInputs();
+      double[] flat = layer.getWeights();
+      double[][] weights = new double[numInputs][layer.size()];
+
+      for (int c = 0; c < layer.size(); ++c) {
+         for (int p = 0; p < numInputs; ++p) {
+            weights[p][c] = flat[c * numInputs + p];
          }
       }
       return weights;
@@ -138,17 +511,9 @@ public class Network {
       ArrayList<double[]> outputs = new ArrayList<double[]>();
 
       // Thread input through network layers.
-      for (Neuron[] layer : layers) {
-         double[] output = new double[layer.length];
-
-         // Process input and catch output.
-         for (int i = 0; i < layer.length; ++i) {
-            output[i] = layer[i].fire(input);
-         }
-         outputs.add(output);
-
-         // Set up input for next layer.
-         input = output;
+      for (int i = 0; i < layers.size(); ++i) {
+         input = layers.get(i).fire(input);
+         outputs.add(input);
       }
       return outputs;
    }
@@ -160,21 +525,121 @@ public class Network {
     * @return total test error
     */
    public double calcTotalTestError(ArrayList<TestCase> tests) {
-      double totalTestError = 0.0;
+      Evaluation evaluation = createEvaluation();
+      evaluate(tests, evaluation);
+      return evaluation.getTestError();
+   }
+
+   /**
+    * Evaluates the network on a test suite.
+    * Test error, accuracy and per-class statistics are gathered from a
+    * single batched forward pass.
+    * @param tests test suite
+    * @param evaluation evaluation to add results to
+    */
+   public void evaluate(ArrayList<TestCase> tests, Evaluation evaluation) {
+      int numOutputs = getNumOutputs();
+      double[] outputs = fireBatch(tests);
+
       for (int i = 0; i < tests.size(); ++i) {
-         totalTestError += calcTestError(tests.get(i));
+         evaluation.add(outputs, i * numOutputs, tests.get(i).outputs);
+      }
+   }
+
+   /**
+    * Calculates the total test error of a dataset.
+    * @param dataset test dataset
+    * @return total test error
+    */
+   public double calcTotalTestError(Dataset dataset) {
+      Evaluation evaluation = createEvaluation();
+      evaluate(dataset, evaluation);
+      return evaluation.getTestError();
+   }
+
+   /**
+    * Evaluates the network on a dataset.
+    * The dataset is streamed in batches, each fired in a single pass.
+    * @param dataset test dataset
+    * @param evaluation evaluation to add results to
+    */
+   public void evaluate(Dataset dataset, Evaluation evaluation) {
+      // Packed datasets are fired straight from their input matrix.
+      if (dataset instanceof PackedDataset) {
+         evaluate((PackedDataset) dataset, evaluation);
+         return;
+      }
+
+      int numOutputs = getNumOutputs();
+      double[] input = new double[kBatchRows * numInputs];
+      double[][] expected = new double[kBatchRows][numOutputs];
+      int rows = 0;
+
+      DatasetReader reader = dataset.open();
+      try {
+         while (true) {
+            TestCase test = reader.next();
+
+            // Buffer the test case.
+            if (test != null) {
+               if (test.inputs.length != numInputs)
+                  throw new RuntimeException("Network fired with improper input!");
+               if (test.outputs.length != numOutputs)
+                  throw new IllegalArgumentException(
+                     "Test case has improper output size!");
+               System.arraycopy(test.inputs, 0, input, rows * numInputs,
+                  numInputs);
+               System.arraycopy(test.outputs, 0, expected[rows], 0,
+                  numOutputs);
+               ++rows;
+            }
+
+            // Fire full batches, and the final partial batch.
+            if (rows == kBatchRows || (test == null && rows > 0)) {
+               double[] outputs = fireBatch(input, rows);
+               for (int i = 0; i < rows; ++i) {
+                  evaluation.add(outputs, i * numOutputs, expected[i]);
+               }
+               rows = 0;
+            }
+            if (test == null) break;
+         }
+      } finally {
+         reader.close();
+      }
+   }
+
+   /**
+    * Evaluates the network on a packed dataset.
+    * Batches are fired straight from the dataset's input matrix.
+    * @param dataset packed dataset
+    * @param evaluation evaluation to add results to
+    */
+   public void evaluate(PackedDataset dataset, Evaluation evaluation) {
+      checkDataset(dataset);
+
+      int numOutputs = getNumOutputs();
+      double[] inputs = dataset.getInputMatrix();
+      double[] expected = dataset.getOutputMatrix();
+
+      for (int from = 0; from < dataset.size(); from += kBatchRows) {
+         int rows = Math.min(kBatchRows, dataset.size() - from);
+         double[] outputs = fireBatch(inputs, from * numInputs, rows);
+         for (int i = 0; i < rows; ++i) {
+            evaluation.add(outputs, i * numOutputs,
+                           expected, (from + i) * numOutputs);
+         }
       }
-      return totalTestError;
    }
 
    /**
     * Runs a test and calculates the total error.
-    * Uses sum of quadratic deviations.
+    * Uses this network's loss.
     * @param test test to calculate error for
     * @return total error
     */
    public double calcTestError(TestCase test) {
-      // Get quadratic deviations for each output neuron
+      // Get the loss of each output neuron.
       double[] errors = calcError(fire(test.inputs), test.outputs);
 
       // Total deviations.
@@ -187,19 +652,19 @@ public class Network {
 
    /**
     * Calculates the error of the network given actual and expected output.
-    * Uses quadratic deviation.
+    * Uses this network's loss, split into each output's share; the shares
+    * sum to the loss of the whole output.
     * @param actual network output
     * @param expected expected output
     * @return errors
     */
    public double[] calcError(double[] actual, double[] expected) {
+      Activation activation = layers.get(layers.size() - 1).getActivation();
       double[] errors = new double[actual.length];
 
       // Calculate test error for each output neuron.
       for (int i = 0; i < actual.length; ++i) {
-         errors[i] = 0.5 *
-                     (expected[i] - actual[i]) *
-                     (expected[i] - actual[i]);
+         errors[i] = loss.calculate(actual, i, expected, i, 1, activation);
       }
       return errors;
    }
@@ -207,19 +672,15 @@ public class Network {
    /**
     * Calculates backpropagation error, which is the derivative of the error.
     * @param actual network output
-    * @param expected expected output
-    * @return backpropagation error
+    * @param expected array containing expected output
+    * @param offset offset of the expected output within the array
+    * @param errors array to receive backpropagation error
     */
-   private double[] calcBPError(double[] actual, double[] expected) {
-      double[] errors = new double[actual.length];
-
-      // Calculate backpropagated error for each output neuron.
-      for (int i = 0; i < actual.length; ++i) {
-         errors[i] = actual[i] *
-                     (1 - actual[i]) *
-                     (expected[i] - actual[i]);
-      }
-      return errors;
+   private void calcBPError(double[] actual, double[] expected, int offset,
+                            double[] errors) {
+      // The loss fuses its derivative with the output activation's.
+      Activation activation = layers.get(layers.size() - 1).getActivation();
+      loss.outputErrors(actual, expected, offset, activation, errors);
    }
 
    /**
@@ -227,96 +688,391 @@ public class Network {
     * @param test test case
     */
    public void learn(TestCase test) {
+      if (workspace == null) workspace = createWorkspace();
+      learn(test, workspace);
+   }
+
+   /**
+    * Teaches the network using a test case and a workspace.
+    * Does not allocate.
+    * @param test test case
+    * @param workspace workspace to learn in
+    */
+   public void learn(TestCase test, Workspace workspace) {
+      learn(test, workspace, null);
+   }
+
+   /**
+    * Teaches the network using a test case and a workspace, recording
+    * the network's output before the update in an evaluation.
+    * Does not allocate.
+    * @param test test case
+    * @param workspace workspace to learn in
+    * @param evaluation evaluation to add the output to, or null
+    */
+   public void learn(TestCase test, Workspace workspace,
+                     Evaluation evaluation) {
+      checkTestCase(test);
+      checkNoBatch(workspace);
+      calcGradients(test.inputs, 0, test.outputs, 0,
+                    workspace, false, evaluation);
+      applyGradients(workspace, 1);
+   }
+
+   /**
+    * Teaches the network using a row of a packed dataset, without copying
+    * the row.
+    * Does not allocate.
+    * @param dataset packed dataset
+    * @param row row index
+    * @param workspace workspace to learn in
+    * @param evaluation evaluation to add the output to, or null
+    */
+   public void learn(PackedDataset dataset, int row, Workspace workspace,
+                     Evaluation evaluation) {
+      checkDataset(dataset);
+      checkNoBatch(workspace);
+      calcGradients(dataset.getInputMatrix(), row * numInputs,
+                    dataset.getOutputMatrix(), row * getNumOutputs(),
+                    workspace, false, evaluation);
+      applyGradients(workspace, 1);
+   }
+
+   /**
+    * Teaches the network using a test case without locking, for threads
+    * teaching the same network at once.
+    * Each thread must use its own workspace. Updates from other threads
+    * may land while the gradients are calculated, and concurrent updates
+    * to the same weight may overwrite each other.
+    * Only plain learning constant updates are supported.
+    * Does not allocate.
+    * @param test test case
+    * @param workspace workspace to learn in
+    */
+   public void learnAsync(TestCase test, Workspace workspace) {
+      checkTestCase(test);
+      checkNoBatch(workspace);
+      calcGradients(test.inputs, 0, test.outputs, 0,
+                    workspace, false, null);
+      applyGradientsAsync(workspace);
+   }
+
+   /**
+    * Teaches the network using a row of a packed dataset without locking,
+    * for threads teaching the same network at once.
+    * Each thread must use its own workspace.
+    * Does not allocate.
+    * @param dataset packed dataset
+    * @param row row index
+    * @param workspace workspace to learn in
+    */
+   public void learnAsync(PackedDataset dataset, int row,
+                          Workspace workspace) {
+      checkDataset(dataset);
+      checkNoBatch(workspace);
+      calcGradients(dataset.getInputMatrix(), row * numInputs,
+                    dataset.getOutputMatrix(), row * getNumOutputs(),
+                    workspace, false, null);
+      applyGradientsAsync(workspace);
+   }
+
+   /**
+    * Teaches the network using a batch of test cases.
+    * Gradients are accumulated over the batch and committed once.
+    * @param tests test suite
+    * @param from index of first test case in the batch
+    * @param to index after the last test case in the batch
+    * @param workspace workspace to learn in
+    */
+   public void learnBatch(ArrayList<TestCase> tests, int from, int to,
+                          Workspace workspace) {
+      learnBatch(tests, from, to, workspace, null);
+   }
+
+   /**
+    * Teaches the network using a batch of test cases, recording the
+    * network's outputs before the update in an evaluation.
+    * @param tests test suite
+    * @param from index of first test case in the batch
+    * @param to index after the last test case in the batch
+    * @param workspace workspace to learn in
+    * @param evaluation evaluation to add outputs to, or null
+    */
+   public void learnBatch(ArrayList<TestCase> tests, int from, int to,
+                          Workspace workspace, Evaluation evaluation) {
+      for (int i = from; i < to; ++i) {
+         accumulate(tests.get(i), workspace, evaluation);
+      }
+      commitBatch(workspace);
+   }
+
+   /**
+    * Teaches the network using a batch of rows of a packed dataset.
+    * Rows are taken in the dataset's current order.
+    * @param dataset packed dataset
+    * @param from position of the first row in the batch
+    * @param to position after the last row in the batch
+    * @param workspace workspace to learn in
+    * @param evaluation evaluation to add outputs to, or null
+    */
+   public void learnBatch(PackedDataset dataset, int from, int to,
+                          Workspace workspace, Evaluation evaluation) {
+      for (int i = from; i < to; ++i) {
+         accumulate(dataset, dataset.getRow(i), workspace, evaluation);
+      }
+      commitBatch(workspace);
+   }
+
+   /**
+    * Adds the gradients for a test case to the workspace's batch.
+    * Gradients are not committed until commitBatch is called.
+    * Only reads the network, so threads may accumulate concurrently into
+    * separate workspaces as long as no batch is committed meanwhile.
+    * @param test test case
+    * @param workspace workspace to accumulate in
+    */
+   public void accumulate(TestCase test, Workspace workspace) {
+      accumulate(test, workspace, null);
+   }
+
+   /**
+    * Adds the gradients for a test case to the workspace's batch,
+    * recording the network's output in an evaluation.
+    * @param test test case
+    * @param workspace workspace to accumulate in
+    * @param evaluation evaluation to add the output to, or null
+    */
+   public void accumulate(TestCase test, Workspace workspace,
+                          Evaluation evaluation) {
+      checkTestCase(test);
+      calcGradients(test.inputs, 0, test.outputs, 0,
+                    workspace, true, evaluation);
+      ++workspace.batchCount;
+   }
+
+   /**
+    * Adds the gradients for a row of a packed dataset to the workspace's
+    * batch, without copying the row.
+    * @param dataset packed dataset
+    * @param row row index
+    * @param workspace workspace to accumulate in
+    * @param evaluation evaluation to add the output to, or null
+    */
+   public void accumulate(PackedDataset dataset, int row,
+                          Workspace workspace, Evaluation evaluation) {
+      checkDataset(dataset);
+      calcGradients(dataset.getInputMatrix(), row * numInputs,
+                    dataset.getOutputMatrix(), row * getNumOutputs(),
+                    workspace, true, evaluation);
+      ++workspace.batchCount;
+   }
+
+   /**
+    * Commits the workspace's accumulated batch gradients.
+    * The update is averaged over the batch, and the gradients are cleared.
+    * @param workspace workspace holding the batch
+    */
+   public void commitBatch(Workspace workspace) {
+      checkWorkspace(workspace);
+      if (workspace.batchCount == 0) return;
+
+      // The update is based on mean(gradient[p][c]).
+      applyGradients(workspace, workspace.batchCount);
+      workspace.clearGradients();
+   }
+
+   /**
+    * Applies the workspace's gradients to each layer.
+    * Without an optimizer,
+    * delta[p][c] = learningConstant * gradient[p][c] / batchCount
+    * @param workspace workspace holding gradients
+    * @param batchCount number of test cases summed into the gradients
+    */
+   private void applyGradients(Workspace workspace, int batchCount) {
+      LayerTimings timings = workspace.timings;
+      long start = (timings != null) ? System.nanoTime() : 0;
+      if (optimizer != null) optimizer.step();
+
+      for (int i = 0; i < layers.size(); ++i) {
+         Layer layer = layers.get(i);
+         if (optimizer == null) {
+            layer.applyGradients(workspace.weightGradients[i],
+               workspace.biasGradients[i], learningConstant / batchCount);
+         } else {
+            // Weights and biases of layer i are slots 2i and 2i + 1.
+            optimizer.update(2 * i, layer.getWeights(),
+               workspace.weightGradients[i], 1.0 / batchCount);
+            optimizer.update(2 * i + 1, layer.getBiases(),
+               workspace.biasGradients[i], 1.0 / batchCount);
+         }
+         layer.holdPruned();
+         if (timings != null) {
+            start = recordTime(timings.commitNanos, i, start);
+         }
+      }
+   }
+
+   /**
+    * Applies the workspace's gradients to each layer without locking.
+    * delta[p][c] = learningConstant * gradient[p][c]
+    * @param workspace workspace holding gradients
+    */
+   private void applyGradientsAsync(Workspace workspace) {
+      if (optimizer != null)
+         throw new IllegalStateException(
+            "Asynchronous learning does not support optimizers!");
+
+      for (int i = 0; i < layers.size(); ++i) {
+         Layer layer = layers.get(i);
+         layer.applyGradientsOpaque(workspace.weightGradients[i],
+            workspace.biasGradients[i], learningConstant);
+         layer.holdPruned();
+      }
+   }
+
+   /**
+    * Adds the time elapsed since a start time to a layer's timing.
+    * @param nanos timing of each layer
+    * @param layerIndex layer index
+    * @param start start time
+    * @return current time, to start the next measurement
+    */
+   private static long recordTime(long[] nanos, int layerIndex, long start) {
+      long now = System.nanoTime();
+      nanos[layerIndex] += now - start;
+      return now;
+   }
+
+   /**
+    * Calculates gradients for a test case.
+    * @param inputs array containing test case inputs
+    * @param inputOffset offset of the inputs within the array
+    * @param expected array containing expected outputs
+    * @param expectedOffset offset of the expected outputs within the array
+    * @param workspace workspace to calculate in
+    * @param accumulate whether to add to existing gradients rather than
+    *                   overwrite them
+    * @param evaluation evaluation to add the output to, or null
+    */
+   private void calcGradients(double[] inputs, int inputOffset,
+                              double[] expected, int expectedOffset,
+                              Workspace workspace, boolean accumulate,
+                              Evaluation evaluation) {
       // Fire network and gather outputs.
-      ArrayList<double[]> outputs = getOutputs(test.inputs);
+      double[] output = fire(inputs, inputOffset, workspace);
+      if (evaluation != null) {
+         evaluation.add(output, 0, expected, expectedOffset);
+      }
 
       // Calculate error for output layer
       // The output layer derives its error from the error function.
       // Backpropagation requires calculation of the derivative.
-      double[] output = outputs.get(outputs.size() - 1);
-      double[] errors = calcBPError(output, test.outputs);
+      int lastIndex = layers.size() - 1;
+      LayerTimings timings = workspace.timings;
+      long start = (timings != null) ? System.nanoTime() : 0;
+      calcBPError(output, expected, expectedOffset,
+                  workspace.errors[lastIndex]);
 
       // Backpropagate through layers.
-      for (int layerIndex = layers.size() - 1; layerIndex >= 0; --layerIndex) {
+      for (int layerIndex = lastIndex; layerIndex >= 0; --layerIndex) {
          // Get output from previous layer.
          // For input layer, this is the test input.
          output = (layerIndex > 0)
-            ? outputs.get(layerIndex - 1)
-            : test.inputs;
-
-         // Get current layer.
-         Neuron[] currLayer = layers.get(layerIndex);
-
-         // Set deltas for each neuron.
-         for (int currIndex = 0; currIndex < currLayer.length; ++currIndex) {
-            Neuron neuron = currLayer[currIndex];
-
-            // Set weight deltas.
-            // delta[p][c] = learningConstant * errors[c] * output[p]
-            for (int prevIndex = 0; prevIndex < output.length; ++prevIndex) {
-               neuron.setWeightDelta(prevIndex,
-                  learningConstant * errors[currIndex] *
-                       output[prevIndex]);
-            }
-            // Set bias delta.
-            // dB = learningConstant * errors[c]
-            neuron.setBiasDelta(learningConstant * errors[currIndex]);
-         }
-
-         // Stop at input layer.
-         if (layerIndex == 0) break;
+            ? workspace.activations[layerIndex - 1]
+            : inputs;
+         int offset = (layerIndex > 0) ? 0 : inputOffset;
 
-         // Create weights table for the current layer.
-         double[][] weights = getLayerWeights(layerIndex);
+         // Get current layer and its errors.
+         Layer currLayer = layers.get(layerIndex);
+         double[] errors = workspace.errors[layerIndex];
 
-         // Calculate hidden layer backpropagated errors.
-         // newErrors[p] = out[p] * (1 - out[p]) * sigma(errors[c] * weights[p][c])
-         double[] newErrors = new double[output.length];
-         for (int prevIndex = 0; prevIndex < output.length; ++prevIndex) {
-            double sigma = 0.0;
-
-            // Calculate error sigma.
-            for (int currIndex = 0; currIndex < currLayer.length; ++currIndex) {
-               sigma += errors[currIndex] * weights[prevIndex][currIndex];
-            }
-
-            // Set the new error.
-            newErrors[prevIndex] = output[prevIndex] *
-                                  (1 - output[prevIndex]) *
-                                  sigma;
+         // Calculate gradients.
+         // gradient[p][c] = errors[c] * output[p]
+         if (accumulate) {
+            currLayer.accumulateGradients(errors, output, offset,
+               workspace.weightGradients[layerIndex],
+               workspace.biasGradients[layerIndex]);
+         } else {
+            currLayer.calcGradients(errors, output, offset,
+               workspace.weightGradients[layerIndex],
+               workspace.biasGradients[layerIndex]);
          }
 
-         // Move new errors over for next iteration.
-         errors = newErrors;
-      }
+         // Stop at input layer.
+         if (layerIndex == 0) {
+            if (timings != null) recordTime(timings.backwardNanos, 0, start);
+            break;
+         }
 
-      // Commit deltas.
-      for (Neuron[] layer : layers) {
-         for (int i = 0; i < layer.length; ++i) {
-            layer[i].commitDeltas();
+         // Calculate hidden layer backpropagated errors.
+         // newErrors[p] = f'(out[p]) * sigma(errors[c] * weights[p][c])
+         double[] newErrors = workspace.errors[layerIndex - 1];
+         currLayer.backpropagate(errors, newErrors);
+         layers.get(layerIndex - 1).getActivation()
+            .derivative(output, newErrors, newErrors.length);
+         if (timings != null) {
+            start = recordTime(timings.backwardNanos, layerIndex, start);
          }
       }
    }
 
    /**
     * Clones this network.
+    * The clone's optimizer has the same settings but no state, and its
+    * generator restarts from this network's seed, so clones of networks
+    * with the same seed reset to the same weights.
     * @return cloned network
     */
    public Network clone() {
-      ArrayList<Neuron[]> newLayers = new ArrayList<Neuron[]>();
+      ArrayList<Layer> newLayers = new ArrayList<Layer>();
 
       // Iterate through layers.
-      for (Neuron[] layer : layers) {
-         Neuron[] newLayer = new Neuron[layer.length];
+      for (int i = 0; i < layers.size(); ++i) {
+         newLayers.add(layers.get(i).clone());
+      }
 
-         // Iterate through neurons in layer.
-         for (int i = 0; i < layer.length; ++i) {
-            newLayer[i] = layer[i].clone();
-         }
-         newLayers.add(newLayer);
+      Network network = new Network(layerSizes, newLayers, seed);
+      network.learningConstant = learningConstant;
+      network.optimizer = (optimizer == null) ? null : optimizer.copy();
+      network.loss = loss;
+      return network;
+   }
+
+   /**
+    * Copies another network's weights and biases into this network in
+    * place.
+    * Does not allocate, so a preallocated network can hold a snapshot that
+    * is overwritten as training progresses.
+    * @param other network of the same shape
+    */
+   public void copyFrom(Network other) {
+      if (other.layers.size() != layers.size())
+         throw new IllegalArgumentException("Network shapes do not match!");
+      for (int i = 0; i < layers.size(); ++i) {
+         layers.get(i).copyFrom(other.layers.get(i));
       }
+   }
 
-      return new Network(newLayers);
+   /**
+    * Saves this network to a binary model file.
+    * @param path file to save to
+    * @throws IOException if the file cannot be written
+    */
+   public void save(Path path) throws IOException {
+      ModelFile.write(this, path);
+   }
+
+   /**
+    * Loads a network from a binary model file.
+    * The weights are copied onto the heap so the network can be trained;
+    * use ModelFile.map to fire straight from the file instead. Model files
+    * hold no seed, so a loaded network resets from a fixed seed.
+    * @param path file to load from
+    * @return network
+    * @throws IOException if the file cannot be read or is invalid
+    */
+   public static Network load(Path path) throws IOException {
+      return ModelFile.read(path);
    }
 
    /**
@@ -326,11 +1082,8 @@ public class Network {
    public String toString() {
       StringBuilder sb = new StringBuilder("Network\n");
 
-      for (Neuron[] layer : layers) {
-         sb.append("  LAYER\n");
-         for (int i = 0; i < layer.length; ++i) {
-            sb.append(layer[i] + "\n");
-         }
+      for (int i = 0; i < layers.size(); ++i) {
+         sb.append(layers.get(i));
       }
       return sb.toString();
    }
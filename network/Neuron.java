@@ -5,62 +5,39 @@ import java.util.Random;
 
 /**
  * Represents a neural network node.
+ * A neuron is a view of a single row of a layer's contiguous storage.
  */
 public class Neuron {
-   /** Number of inputs. */
-   private int numInputs;
-   /** Array of weight values. */
-   private double[] weights;
-   /** Bias weight. */
-   private double bias;
-
-   /** Delta of weight changes for backpropagation. */
-   private double[] weightDeltas;
-   /** Delta of bias change for backpropagation. */
-   private double biasDelta;
+   /** Layer holding this neuron's weights. */
+   private Layer layer;
+   /** Index of this neuron within its layer. */
+   private int index;
 
    /**
     * Randomized constructor.
-    * Randomizes weights and bias.
+    * Creates a standalone neuron with randomized weights and bias.
     *
     * @param numInputs number of node inputs.
     */
    public Neuron(int numInputs) {
-      this.numInputs = numInputs;
-      this.weights = new double[numInputs];
-      this.weightDeltas = new double[numInputs];
-      randomize();
+      this(new Layer(numInputs, 1), 0);
    }
 
    /**
-    * Explicit constructor.
-    * Initializes weights and bias, deep copying weights.
-    * Useful for copying.
-    *
-    * @param weights initial weights
-    * @param bias initial bias
+    * View constructor.
+    * @param layer layer holding the neuron's weights
+    * @param index index of the neuron within the layer
     */
-   private Neuron(double[] weights, double bias) {
-      this.numInputs = weights.length;
-      this.bias = bias;
-      this.weightDeltas = new double[weights.length];
-
-      // Copy weights.
-      this.weights = new double[weights.length];
-      System.arraycopy(weights, 0, this.weights, 0, weights.length);
+   Neuron(Layer layer, int index) {
+      this.layer = layer;
+      this.index = index;
    }
 
    /**
     * Randomizes the weights and bias.
     */
    public void randomize() {
-      Random rand = new Random();
-
-      // Randomize weights.
-      for (int i = 0; i < numInputs; ++i) {
-         this.weights[i] = rand.nextDouble() * 2 - 1;
-      }
-      this.bias = rand.nextDouble() * 2 - 1;
+      layer.randomize(index, new Random());
    }
 
    /**
@@ -69,20 +46,7 @@ public class Neuron {
     * @return output signal
     */
    public double fire(double[] inputs) {
-      // Ensure input is of proper length.
-      if (inputs.length != numInputs)
-         throw new RuntimeException("Neuron received invalid number of inputs!");
-
-      double x = 0.0;
-
-      // Calculate sigmoid input.
-      for (int i = 0; i < numInputs; ++i) {
-         x += inputs[i] * weights[i];
-      }
-      x += bias;
-
-      // Calculate signal output.
-      return Sigmoid.calculate(x);
+      return layer.fire(index, inputs);
    }
 
    /**
@@ -91,7 +55,7 @@ public class Neuron {
     * @param offset weight offset
     */
    public void setWeightDelta(int weightIndex, double offset) {
-      weightDeltas[weightIndex] = offset;
+      layer.setWeightDelta(index, weightIndex, offset);
    }
 
    /**
@@ -99,27 +63,27 @@ public class Neuron {
     * @param offset bias offset
     */
    public void setBiasDelta(double offset) {
-      biasDelta = offset;
+      layer.setBiasDelta(index, offset);
    }
 
    /**
     * Commits any pending weight deltas.
     */
    public void commitDeltas() {
-      for (int i = 0; i < numInputs; ++i) {
-         weights[i] += weightDeltas[i];
-         weightDeltas[i] = 0;
-      }
-      bias += biasDelta;
-      biasDelta = 0;
+      layer.commitDeltas(index);
    }
 
    /**
     * Getter for weights.
+    * Returns a copy of this neuron's row of the layer weights. Unlike the
+    * array neurons once held, writes to the copy do not reach the network;
+    * use setWeightDelta and commitDeltas to change a weight.
     * @return weights
     */
    public double[] getWeights() {
-      return weights;
+      int numInputs = layer.getNumInputs();
+      int row = index * numInputs;
+      return Arrays.copyOfRange(layer.getWeights(), row, row + numInputs);
    }
 
    /**
@@ -127,15 +91,19 @@ public class Neuron {
     * @return bias
     */
    public double getBias() {
-      return bias;
+      return layer.getBiases()[index];
    }
 
    /**
-    * Clones this neuron.
+    * Clones this neuron into a standalone neuron.
     * @return clone
     */
    public Neuron clone() {
-      return new Neuron(this.weights, this.bias);
+      Neuron neuron = new Neuron(layer.getNumInputs());
+      System.arraycopy(getWeights(), 0, neuron.layer.getWeights(), 0,
+         layer.getNumInputs());
+      neuron.layer.getBiases()[0] = getBias();
+      return neuron;
    }
 
    /**
@@ -144,8 +112,8 @@ public class Neuron {
     */
    public String toString() {
       StringBuilder sb = new StringBuilder("     NEURON:\n");
-      sb.append("        WEIGHTS: " + Arrays.toString(weights) + "\n");
-      sb.append("        BIAS: " + bias);
+      sb.append("        WEIGHTS: " + Arrays.toString(getWeights()) + "\n");
+      sb.append("        BIAS: " + getBias());
       return sb.toString();
    }
 }
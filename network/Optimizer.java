@@ -0,0 +1,38 @@
+package network;
+
+/**
+ * Applies gradients to a network's parameters.
+ * Gradients are in ascent form: a plain gradient step adds the scaled
+ * gradient to each parameter. Each weight matrix and bias vector is a
+ * separate parameter slot, and optimizers keep any per-parameter state in
+ * flat arrays parallel to each slot.
+ */
+public interface Optimizer {
+   /**
+    * Begins an update of all parameter slots.
+    * Called once before the slots of a network are updated.
+    */
+   void step();
+
+   /**
+    * Updates a parameter slot.
+    * @param slot parameter slot index
+    * @param params parameters to update
+    * @param gradients gradient for each parameter
+    * @param gradientScale scale applied to each gradient, e.g. one over
+    *                      the batch size
+    */
+   void update(int slot, double[] params, double[] gradients,
+               double gradientScale);
+
+   /**
+    * Clears all per-parameter state, e.g. after the network is reset.
+    */
+   void reset();
+
+   /**
+    * Creates an optimizer with the same settings and no state.
+    * @return fresh optimizer
+    */
+   Optimizer copy();
+}
@@ -0,0 +1,229 @@
+package network;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Represents a dataset packed into contiguous structure-of-arrays storage.
+ * All inputs live in one row-major matrix and all expected outputs in
+ * another, so a suite carries no per-test-case objects and sequential
+ * passes walk memory in order. Passes visit rows in the order of an index
+ * permutation, which can be shuffled cheaply without moving any rows.
+ * Each matrix is a single Java array, so a dataset holds at most
+ * (Integer.MAX_VALUE - 8) / max(numInputs, numOutputs) test cases, e.g.
+ * about 2.7 million rows of 784 inputs.
+ */
+public class PackedDataset implements Dataset {
+   /** Largest array length the VM reliably allocates. */
+   private static final int kMaxArrayLength = Integer.MAX_VALUE - 8;
+
+   /** Number of inputs per test case. */
+   private final int numInputs;
+   /** Number of outputs per test case. */
+   private final int numOutputs;
+
+   /** Input matrix (size x numInputs, row-major). */
+   private double[] inputs;
+   /** Expected output matrix (size x numOutputs, row-major). */
+   private double[] outputs;
+   /** Number of test cases. */
+   private int size;
+
+   /** Order in which passes visit rows. */
+   private int[] order;
+
+   /**
+    * Constructor.
+    * @param numInputs number of inputs per test case
+    * @param numOutputs number of outputs per test case
+    * @param capacity initial number of test cases to allocate for, capped
+    *                 at the most test cases one dataset can hold
+    */
+   public PackedDataset(int numInputs, int numOutputs, int capacity) {
+      this.numInputs = numInputs;
+      this.numOutputs = numOutputs;
+      capacity = (int) Math.min(Math.max(1, capacity), getMaxSize());
+      this.inputs = new double[capacity * numInputs];
+      this.outputs = new double[capacity * numOutputs];
+      this.order = new int[capacity];
+   }
+
+   /**
+    * Packs a dataset.
+    * @param dataset dataset to pack
+    * @return packed dataset
+    */
+   public static PackedDataset pack(Dataset dataset) {
+      PackedDataset packed = new PackedDataset(dataset.getNumInputs(),
+         dataset.getNumOutputs(), 1024);
+      DatasetReader reader = dataset.open();
+      try {
+         TestCase test;
+         while ((test = reader.next()) != null) {
+            packed.add(test.inputs, test.outputs);
+         }
+      } finally {
+         reader.close();
+      }
+      return packed;
+   }
+
+   /**
+    * Packs a test suite.
+    * @param tests test suite
+    * @return packed dataset
+    */
+   public static PackedDataset pack(ArrayList<TestCase> tests) {
+      return pack(new ListDataset(tests));
+   }
+
+   /**
+    * Adds a test case.
+    * New test cases are visited last in the current order.
+    * @param inputs test case inputs
+    * @param expected test case expected outputs
+    */
+   public void add(double[] inputs, double[] expected) {
+      if (inputs.length != numInputs || expected.length != numOutputs)
+         throw new IllegalArgumentException("Test case has improper size!");
+
+      // Grow storage by doubling, up to what one array can hold.
+      if (size == order.length) {
+         if (size >= getMaxSize())
+            throw new IllegalStateException("Dataset too large!");
+         int capacity = (int) Math.min(2L * order.length, getMaxSize());
+         this.inputs = Arrays.copyOf(this.inputs, capacity * numInputs);
+         this.outputs = Arrays.copyOf(this.outputs, capacity * numOutputs);
+         this.order = Arrays.copyOf(this.order, capacity);
+      }
+
+      System.arraycopy(inputs, 0, this.inputs, size * numInputs, numInputs);
+      System.arraycopy(expected, 0, this.outputs, size * numOutputs,
+         numOutputs);
+      order[size] = size;
+      ++size;
+   }
+
+   /**
+    * Gets the most test cases the dataset can hold.
+    * Every matrix must fit in a single array.
+    * @return maximum number of test cases
+    */
+   public int getMaxSize() {
+      int width = Math.max(1, Math.max(numInputs, numOutputs));
+      return kMaxArrayLength / width;
+   }
+
+   /**
+    * Shuffles the order in which passes visit rows.
+    * Only the index permutation is shuffled; rows stay in place.
+    * @param rand random number generator
+    */
+   public void shuffle(Random rand) {
+      for (int i = size - 1; i > 0; --i) {
+         int j = rand.nextInt(i + 1);
+         int swap = order[i];
+         order[i] = order[j];
+         order[j] = swap;
+      }
+   }
+
+   /**
+    * Gets the number of inputs per test case.
+    * @return number of inputs
+    */
+   public int getNumInputs() {
+      return numInputs;
+   }
+
+   /**
+    * Gets the number of expected outputs per test case.
+    * @return number of outputs
+    */
+   public int getNumOutputs() {
+      return numOutputs;
+   }
+
+   /**
+    * Gets the number of test cases.
+    * @return number of test cases
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Gets the row visited at a position in the current order.
+    * @param position position in the order
+    * @return row index
+    */
+   public int getRow(int position) {
+      return order[position];
+   }
+
+   /**
+    * Getter for the input matrix.
+    * Row r starts at r * getNumInputs().
+    * @return input matrix (size x inputs, row-major)
+    */
+   public double[] getInputMatrix() {
+      return inputs;
+   }
+
+   /**
+    * Getter for the expected output matrix.
+    * Row r starts at r * getNumOutputs().
+    * @return expected output matrix (size x outputs, row-major)
+    */
+   public double[] getOutputMatrix() {
+      return outputs;
+   }
+
+   /**
+    * Gets a view of a row's inputs without copying.
+    * @param row row index
+    * @return input view
+    */
+   public DoubleBuffer getInputs(int row) {
+      return DoubleBuffer.wrap(inputs, row * numInputs, numInputs).slice();
+   }
+
+   /**
+    * Gets a view of a row's expected outputs without copying.
+    * @param row row index
+    * @return expected output view
+    */
+   public DoubleBuffer getOutputs(int row) {
+      return DoubleBuffer.wrap(outputs, row * numOutputs, numOutputs).slice();
+   }
+
+   /**
+    * Opens a pass over the dataset in the current order.
+    * Rows are copied into a reused test case; callers that can work on
+    * the matrices directly should use getRow with the matrix getters.
+    * @return reader positioned at the first test case
+    */
+   public DatasetReader open() {
+      return new DatasetReader() {
+         /** Reused test case. */
+         private final TestCase sample =
+            new TestCase(new double[numInputs], new double[numOutputs]);
+         /** Position of the next test case in the order. */
+         private int position = 0;
+
+         public TestCase next() {
+            if (position >= size) return null;
+            int row = order[position++];
+            System.arraycopy(inputs, row * numInputs, sample.inputs, 0,
+               numInputs);
+            System.arraycopy(outputs, row * numOutputs, sample.outputs, 0,
+               numOutputs);
+            return sample;
+         }
+
+         public void close() { }
+      };
+   }
+}
@@ -0,0 +1,164 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Teaches a network with data-parallel batches.
+ * Each batch is split into a fixed number of shards. Worker threads
+ * calculate gradients for their shard against the network's current
+ * weights, and the partial gradients are combined by a fixed binary tree
+ * before a single update is committed. Because shard boundaries and the
+ * reduction order depend only on the shard count, results are
+ * reproducible for a given seed and thread count.
+ */
+public class ParallelLearner {
+   /** Worker pool. */
+   private final ForkJoinPool pool;
+
+   /** Number of shards per batch. */
+   private final int numShards;
+
+   /** Gradient workspace for each shard. */
+   private Workspace[] workspaces;
+
+   /**
+    * Constructor.
+    * @param numThreads number of worker threads, which is also the number
+    *                   of shards per batch
+    */
+   public ParallelLearner(int numThreads) {
+      if (numThreads < 1)
+         throw new IllegalArgumentException("Invalid thread count!");
+      this.numShards = numThreads;
+      this.pool = new ForkJoinPool(numThreads);
+   }
+
+   /**
+    * Teaches the network using a batch of test cases.
+    * Gradients are calculated in parallel and committed once.
+    * @param network network to teach
+    * @param tests test suite
+    * @param from index of first test case in the batch
+    * @param to index after the last test case in the batch
+    */
+   public void learnBatch(Network network, ArrayList<TestCase> tests,
+                          int from, int to) {
+      prepareWorkspaces(network);
+      pool.invoke(new GradientTask(network, tests, null, from, to,
+                                   0, numShards));
+      network.commitBatch(workspaces[0]);
+   }
+
+   /**
+    * Teaches the network using a batch of rows of a packed dataset.
+    * Rows are taken in the dataset's current order.
+    * @param network network to teach
+    * @param dataset packed dataset
+    * @param from position of the first row in the batch
+    * @param to position after the last row in the batch
+    */
+   public void learnBatch(Network network, PackedDataset dataset,
+                          int from, int to) {
+      prepareWorkspaces(network);
+      pool.invoke(new GradientTask(network, null, dataset, from, to,
+                                   0, numShards));
+      network.commitBatch(workspaces[0]);
+   }
+
+   /**
+    * Allocates workspaces on first use, or if the network changed shape.
+    * @param network network to teach
+    */
+   private void prepareWorkspaces(Network network) {
+      if (workspaces == null ||
+          !workspaces[0].fits(network.getLayerSizes())) {
+         workspaces = new Workspace[numShards];
+         for (int i = 0; i < numShards; ++i) {
+            workspaces[i] = network.createWorkspace();
+         }
+      }
+   }
+
+   /**
+    * Shuts down the worker pool.
+    */
+   public void shutdown() {
+      pool.shutdown();
+   }
+
+   /**
+    * Calculates gradients for a range of shards and reduces them into the
+    * workspace of the first shard in the range.
+    */
+   private class GradientTask extends RecursiveAction {
+      /** Serialization version. */
+      private static final long serialVersionUID = 1L;
+
+      /** Network to calculate gradients for. */
+      private final Network network;
+      /** Test suite, or null if learning from a packed dataset. */
+      private final ArrayList<TestCase> tests;
+      /** Packed dataset, or null if learning from a test suite. */
+      private final PackedDataset packed;
+      /** Index of first test case in the batch. */
+      private final int from;
+      /** Index after the last test case in the batch. */
+      private final int to;
+      /** First shard in range. */
+      private final int shardLow;
+      /** Shard after the last in range. */
+      private final int shardHigh;
+
+      /**
+       * Constructor.
+       * @param network network to calculate gradients for
+       * @param tests test suite, or null
+       * @param packed packed dataset, or null
+       * @param from index of first test case in the batch
+       * @param to index after the last test case in the batch
+       * @param shardLow first shard in range
+       * @param shardHigh shard after the last in range
+       */
+      GradientTask(Network network, ArrayList<TestCase> tests,
+                   PackedDataset packed, int from, int to,
+                   int shardLow, int shardHigh) {
+         this.network = network;
+         this.tests = tests;
+         this.packed = packed;
+         this.from = from;
+         this.to = to;
+         this.shardLow = shardLow;
+         this.shardHigh = shardHigh;
+      }
+
+      /**
+       * Calculates and reduces gradients.
+       */
+      protected void compute() {
+         // Leaf: accumulate the shard's test cases.
+         if (shardHigh - shardLow == 1) {
+            Workspace workspace = workspaces[shardLow];
+            long size = to - from;
+            int start = from + (int) (size * shardLow / numShards);
+            int end = from + (int) (size * (shardLow + 1) / numShards);
+            for (int i = start; i < end; ++i) {
+               if (packed != null) {
+                  network.accumulate(packed, packed.getRow(i), workspace, null);
+               } else {
+                  network.accumulate(tests.get(i), workspace);
+               }
+            }
+            return;
+         }
+
+         // Split the shard range, then merge the right half into the left.
+         int mid = (shardLow + shardHigh) >>> 1;
+         invokeAll(
+            new GradientTask(network, tests, packed, from, to, shardLow, mid),
+            new GradientTask(network, tests, packed, from, to, mid, shardHigh));
+         workspaces[shardLow].mergeGradients(workspaces[mid]);
+      }
+   }
+}
@@ -0,0 +1,38 @@
+package network;
+
+import java.util.Arrays;
+
+/**
+ * Holds one flat array of optimizer state per parameter slot.
+ * Arrays are allocated on first use and reallocated if a slot changes
+ * size.
+ */
+class ParameterState {
+   /** State array of each slot. */
+   private double[][] slots = new double[0][];
+
+   /**
+    * Gets the state array of a slot.
+    * @param slot parameter slot index
+    * @param length number of parameters in the slot
+    * @return state array, zeroed when first allocated
+    */
+   double[] get(int slot, int length) {
+      if (slot >= slots.length) {
+         slots = Arrays.copyOf(slots, slot + 1);
+      }
+      if (slots[slot] == null || slots[slot].length != length) {
+         slots[slot] = new double[length];
+      }
+      return slots[slot];
+   }
+
+   /**
+    * Zeroes all state arrays.
+    */
+   void clear() {
+      for (double[] state : slots) {
+         if (state != null) Arrays.fill(state, 0.0);
+      }
+   }
+}
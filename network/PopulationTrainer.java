@@ -0,0 +1,228 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Trains a population of independently initialized networks at once.
+ * Each member of the population trains on its own thread. Members whose
+ * error trails the population and has stopped improving are pruned and
+ * replaced with a freshly initialized network, and the first member to
+ * reach an acceptable state wins, cancelling the rest. Pruned members are
+ * reported to the trainer's listeners as network resets.
+ *
+ * Members read the trainer's dataset concurrently, so a population of
+ * more than one cannot train from an InputPipeline, which allows only one
+ * open pass at a time.
+ */
+public class PopulationTrainer {
+   /** Number of epochs a member trains before it may be pruned. */
+   private static final int kPruneGrace = 50;
+
+   /**
+    * Error ratio to the population's best at which a member is considered
+    * to be trailing.
+    */
+   private static final double kPruneRatio = 1.5;
+
+   /**
+    * Fraction by which a member's error must fall over the grace period
+    * for it to be considered improving.
+    */
+   private static final double kMinImprovement = 0.05;
+
+   /**
+    * Longest time to wait for cancelled members to finish their epoch
+    * (s).
+    */
+   private static final long kShutdownTimeout = 60;
+
+   /** Trainer providing the suite and learning settings. */
+   private final Trainer trainer;
+
+   /** Prototype network providing shape and learning constant. */
+   private final Network prototype;
+
+   /** Current error of each population slot, as double bits. */
+   private final AtomicLongArray errors;
+
+   /** Seed for the next network created. */
+   private final AtomicLong nextSeed;
+
+   /**
+    * Constructor.
+    * @param trainer trainer providing the suite and learning settings
+    * @param prototype network providing shape, activations, loss and
+    *                  learning settings
+    * @param populationSize number of networks trained at once
+    * @param seed seed for the first network; later networks use
+    *             consecutive seeds
+    * @throws IllegalArgumentException if several members would share the
+    *         trainer's input pipeline
+    */
+   public PopulationTrainer(Trainer trainer, Network prototype,
+                            int populationSize, long seed) {
+      if (populationSize < 1)
+         throw new IllegalArgumentException("Invalid population size!");
+      if (populationSize > 1 && trainer.getDataset() instanceof InputPipeline)
+         throw new IllegalArgumentException(
+            "Population cannot share an input pipeline!");
+
+      this.trainer = trainer;
+      this.prototype = prototype;
+      this.errors = new AtomicLongArray(populationSize);
+      this.nextSeed = new AtomicLong(seed);
+
+      for (int i = 0; i < populationSize; ++i) {
+         errors.set(i, Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+      }
+   }
+
+   /**
+    * Trains the population until a member reaches an acceptable state.
+    * Members notice cancellation between epochs, so the stragglers are
+    * waited for, up to a bound, before the winner is returned; until then
+    * they may still be reading the trainer's dataset.
+    * @return winning network
+    */
+   public Network train() {
+      int populationSize = errors.length();
+      ExecutorService pool = Executors.newFixedThreadPool(populationSize);
+      CompletionService<Network> completion =
+         new ExecutorCompletionService<Network>(pool);
+
+      // Start a member in each slot.
+      ArrayList<Future<Network>> futures = new ArrayList<Future<Network>>();
+      for (int i = 0; i < populationSize; ++i) {
+         futures.add(completion.submit(new Member(i)));
+      }
+
+      try {
+         // The first member to finish has converged.
+         return completion.take().get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException("Population training interrupted!", e);
+      } catch (ExecutionException e) {
+         throw new RuntimeException("Population training failed!", e.getCause());
+      } finally {
+         // Cancel the stragglers and wait for them to stop.
+         for (Future<Network> future : futures) {
+            future.cancel(true);
+         }
+         pool.shutdownNow();
+         try {
+            pool.awaitTermination(kShutdownTimeout, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * Gets the lowest current error in the population.
+    * @return best error
+    */
+   private double getBestError() {
+      double best = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < errors.length(); ++i) {
+         best = Math.min(best, Double.longBitsToDouble(errors.get(i)));
+      }
+      return best;
+   }
+
+   /**
+    * Creates a freshly initialized network shaped like the prototype.
+    * @return network
+    */
+   private Network createNetwork() {
+      Network network = new Network(prototype.getLayerSizes(),
+                                    nextSeed.getAndIncrement());
+      network.setLearningConstant(prototype.getLearningConstant());
+      for (int i = 0; i < prototype.getNumLayers(); ++i) {
+         network.getLayer(i).setActivation(
+            prototype.getLayer(i).getActivation());
+      }
+      network.setLoss(prototype.getLoss());
+      if (prototype.getOptimizer() != null) {
+         network.setOptimizer(prototype.getOptimizer().copy());
+      }
+      return network;
+   }
+
+   /**
+    * Trains members of the population in one slot until one converges.
+    */
+   private class Member implements Callable<Network> {
+      /** Population slot. */
+      private final int slot;
+
+      /**
+       * Constructor.
+       * @param slot population slot
+       */
+      Member(int slot) {
+         this.slot = slot;
+      }
+
+      /**
+       * Trains until a member in this slot converges or is cancelled.
+       * @return converged network
+       * @throws InterruptedException if cancelled
+       */
+      public Network call() throws InterruptedException {
+         Dataset dataset = trainer.getDataset();
+         Network network = createNetwork();
+         Workspace workspace = network.createWorkspace();
+         Evaluation evaluation = network.createEvaluation();
+
+         int epoch = 0;
+         double graceError = Double.POSITIVE_INFINITY;
+
+         while (true) {
+            if (Thread.currentThread().isInterrupted())
+               throw new InterruptedException();
+
+            // Teach the network using the tests.
+            trainer.runEpoch(network, workspace);
+            ++epoch;
+
+            evaluation.clear();
+            network.evaluate(dataset, evaluation);
+            double testError = evaluation.getTestError();
+            double percentCorrect = evaluation.getPercentCorrect();
+            errors.set(slot, Double.doubleToLongBits(testError));
+
+            if (trainer.isAcceptable(testError, percentCorrect)) return network;
+
+            // At the end of each grace period, prune the member if it
+            //   trails the population and has stopped improving.
+            if (epoch % kPruneGrace == 0) {
+               boolean trailing = testError > kPruneRatio * getBestError();
+               boolean improving =
+                  testError < (1 - kMinImprovement) * graceError;
+
+               if (trailing && !improving) {
+                  if (Thread.currentThread().isInterrupted())
+                     throw new InterruptedException();
+                  trainer.fireNetworkReset(epoch);
+                  network = createNetwork();
+                  errors.set(slot,
+                     Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+                  testError = Double.POSITIVE_INFINITY;
+               }
+               graceError = testError;
+            }
+         }
+      }
+   }
+}
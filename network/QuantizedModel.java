@@ -0,0 +1,232 @@
+package network;
+
+import java.util.ArrayList;
+
+/**
+ * Represents a network quantized to 8-bit integers for inference.
+ * Each weight row is scaled symmetrically into [-127, 127] by its largest
+ * weight. The inputs of each layer are scaled by the largest magnitude
+ * seen for that layer while firing the network over a calibration
+ * dataset, and values outside the calibrated range saturate. Dot products
+ * are accumulated in 32-bit integers and scaled back to double, where the
+ * bias is added, only to apply each layer's activation. Weights take an
+ * eighth of the memory of the network's.
+ * The model is immutable and may be fired from any number of threads.
+ */
+public class QuantizedModel implements Model {
+   /** Largest quantized magnitude. */
+   private static final int kMaxQuantized = 127;
+
+   /**
+    * Largest number of layer inputs whose dot product cannot overflow the
+    * 32-bit accumulator.
+    */
+   private static final int kMaxInputs =
+      Integer.MAX_VALUE / (kMaxQuantized * kMaxQuantized);
+
+   /** Layer sizes. */
+   private final int[] layerSizes;
+
+   /** Quantized weight matrix of each layer (size x inputs, row-major). */
+   private final byte[][] weights;
+
+   /** Bias of each neuron, added after rescaling the accumulator. */
+   private final double[][] biases;
+
+   /**
+    * Scale of each neuron's accumulator: weight scale times input scale.
+    */
+   private final double[][] outputScales;
+
+   /** Scale of each layer's quantized inputs. */
+   private final double[] inputScales;
+
+   /** Activation function of each layer. */
+   private final Activation[] activations;
+
+   /**
+    * Calibrating constructor.
+    * Quantizes the network's current weights, calibrating the input range
+    * of each layer on a dataset.
+    * @param network network to quantize
+    * @param calibration dataset to calibrate input ranges with
+    * @throws IllegalArgumentException if a layer is too wide for the
+    *         accumulator or the calibration dataset is empty
+    */
+   public QuantizedModel(Network network, Dataset calibration) {
+      int numLayers = network.getNumLayers();
+      this.layerSizes = network.getLayerSizes().clone();
+      for (int l = 0; l < numLayers; ++l) {
+         if (layerSizes[l] > kMaxInputs)
+            throw new IllegalArgumentException("Layer too wide to quantize!");
+      }
+      this.weights = new byte[numLayers][];
+      this.biases = new double[numLayers][];
+      this.outputScales = new double[numLayers][];
+      this.activations = new Activation[numLayers];
+
+      // Scale each layer's inputs by its calibrated range.
+      double[] ranges = calibrate(network, calibration);
+      this.inputScales = new double[numLayers];
+      for (int l = 0; l < numLayers; ++l) {
+         inputScales[l] = (ranges[l] > 0.0) ? ranges[l] / kMaxQuantized : 1.0;
+      }
+
+      for (int l = 0; l < numLayers; ++l) {
+         Layer layer = network.getLayer(l);
+         quantizeLayer(l, layer.getWeights(), layer.getBiases());
+         activations[l] = layer.getActivation();
+      }
+   }
+
+   /**
+    * Test suite constructor.
+    * @param network network to quantize
+    * @param calibration test suite to calibrate input ranges with
+    */
+   public QuantizedModel(Network network, ArrayList<TestCase> calibration) {
+      this(network, new ListDataset(calibration));
+   }
+
+   /**
+    * Finds the largest input magnitude of each layer over a dataset.
+    * @param network network to fire
+    * @param calibration calibration dataset
+    * @return largest input magnitude of each layer
+    */
+   private static double[] calibrate(Network network, Dataset calibration) {
+      double[] ranges = new double[network.getNumLayers()];
+      Workspace workspace = network.createWorkspace();
+      int count = 0;
+      DatasetReader reader = calibration.open();
+      try {
+         TestCase test;
+         while ((test = reader.next()) != null) {
+            ++count;
+            network.fire(test.inputs, workspace);
+            ranges[0] = Math.max(ranges[0], maxMagnitude(test.inputs));
+            for (int l = 1; l < ranges.length; ++l) {
+               ranges[l] = Math.max(ranges[l],
+                  maxMagnitude(workspace.getActivations(l - 1)));
+            }
+         }
+      } finally {
+         reader.close();
+      }
+      if (count == 0)
+         throw new IllegalArgumentException("Calibration dataset is empty!");
+      return ranges;
+   }
+
+   /**
+    * Quantizes the weights and biases of a layer.
+    * @param l layer index
+    * @param layerWeights weights (size x inputs, row-major)
+    * @param layerBiases biases
+    */
+   private void quantizeLayer(int l, double[] layerWeights,
+                              double[] layerBiases) {
+      int numInputs = layerSizes[l];
+      int size = layerSizes[l + 1];
+      weights[l] = new byte[size * numInputs];
+      biases[l] = layerBiases.clone();
+      outputScales[l] = new double[size];
+
+      for (int n = 0, row = 0; n < size; ++n, row += numInputs) {
+         // Scale the row by its largest weight.
+         double range = 0.0;
+         for (int i = row; i < row + numInputs; ++i) {
+            range = Math.max(range, Math.abs(layerWeights[i]));
+         }
+         double weightScale = (range > 0.0) ? range / kMaxQuantized : 1.0;
+
+         for (int i = row; i < row + numInputs; ++i) {
+            weights[l][i] = (byte) Math.round(layerWeights[i] / weightScale);
+         }
+         outputScales[l][n] = weightScale * inputScales[l];
+      }
+   }
+
+   /**
+    * Quantizes values, saturating outside the calibrated range.
+    * @param values values
+    * @param scale quantization scale
+    * @param quantized array to receive quantized values
+    */
+   private static void quantize(double[] values, double scale,
+                                byte[] quantized) {
+      for (int i = 0; i < values.length; ++i) {
+         long q = Math.round(values[i] / scale);
+         quantized[i] = (byte) Math.max(-kMaxQuantized,
+                                        Math.min(kMaxQuantized, q));
+      }
+   }
+
+   /**
+    * Gets the largest magnitude in an array.
+    * @param values values
+    * @return largest absolute value
+    */
+   private static double maxMagnitude(double[] values) {
+      double max = 0.0;
+      for (int i = 0; i < values.length; ++i) {
+         max = Math.max(max, Math.abs(values[i]));
+      }
+      return max;
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes.clone();
+   }
+
+   /**
+    * Gets the number of bytes held by the quantized weights, biases and
+    * scales.
+    * @return model size in bytes
+    */
+   public long getSizeBytes() {
+      long bytes = 8L * inputScales.length;
+      for (int l = 0; l < weights.length; ++l) {
+         bytes += weights[l].length + 8L * biases[l].length +
+                  8L * outputScales[l].length;
+      }
+      return bytes;
+   }
+
+   /**
+    * Fires the model and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      // Validate input size.
+      if (input.length != layerSizes[0])
+         throw new RuntimeException("Model fired with improper input!");
+
+      // Thread input through layers.
+      for (int l = 0; l < weights.length; ++l) {
+         byte[] quantized = new byte[input.length];
+         quantize(input, inputScales[l], quantized);
+         byte[] layerWeights = weights[l];
+         double[] layerBiases = biases[l];
+         double[] layerScales = outputScales[l];
+         int numInputs = layerSizes[l];
+         double[] output = new double[layerSizes[l + 1]];
+
+         // Calculate activation inputs.
+         for (int n = 0, row = 0; n < output.length; ++n, row += numInputs) {
+            int dot = Kernels.dot(quantized, 0, layerWeights, row, numInputs);
+            output[n] = dot * layerScales[n] + layerBiases[n];
+         }
+
+         // Calculate signal outputs.
+         activations[l].apply(output, 0, output.length);
+         input = output;
+      }
+      return input;
+   }
+}
@@ -0,0 +1,79 @@
+package network;
+
+/**
+ * RMSProp: gradient descent scaled by a running average of squared
+ * gradients.
+ * s[i] = decay * s[i] + (1 - decay) * g[i]^2
+ * params[i] += learningRate * g[i] / (sqrt(s[i]) + epsilon)
+ */
+public class RmsPropOptimizer implements Optimizer {
+   /** Default decay of the squared gradient average. */
+   public static final double kDefaultDecay = 0.9;
+   /** Term added to the denominator for stability. */
+   private static final double kEpsilon = 1e-8;
+
+   /** Learning rate. */
+   private final double learningRate;
+   /** Decay of the squared gradient average. */
+   private final double decay;
+
+   /** Running average of each parameter's squared gradient. */
+   private final ParameterState meanSquare = new ParameterState();
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate, typically 0.001
+    */
+   public RmsPropOptimizer(double learningRate) {
+      this(learningRate, kDefaultDecay);
+   }
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate
+    * @param decay decay of the squared gradient average
+    */
+   public RmsPropOptimizer(double learningRate, double decay) {
+      this.learningRate = learningRate;
+      this.decay = decay;
+   }
+
+   /**
+    * Does nothing; the squared gradient average is updated per slot.
+    */
+   public void step() { }
+
+   /**
+    * Updates the slot's squared gradient average and steps along the
+    * gradient scaled by its root.
+    * @param slot parameter slot index
+    * @param params parameters to update
+    * @param gradients gradient for each parameter
+    * @param gradientScale scale applied to each gradient
+    */
+   public void update(int slot, double[] params, double[] gradients,
+                      double gradientScale) {
+      double[] s = meanSquare.get(slot, params.length);
+      for (int i = 0; i < params.length; ++i) {
+         double g = gradientScale * gradients[i];
+         double si = decay * s[i] + (1 - decay) * g * g;
+         s[i] = si;
+         params[i] += learningRate * g / (Math.sqrt(si) + kEpsilon);
+      }
+   }
+
+   /**
+    * Zeroes the squared gradient average of every slot.
+    */
+   public void reset() {
+      meanSquare.clear();
+   }
+
+   /**
+    * Creates an optimizer with the same settings and no averages.
+    * @return fresh optimizer
+    */
+   public Optimizer copy() {
+      return new RmsPropOptimizer(learningRate, decay);
+   }
+}
@@ -0,0 +1,55 @@
+package network;
+
+/**
+ * Scalar implementation of the numeric kernels.
+ * Used whenever the Vector API is unavailable.
+ */
+class ScalarKernels implements KernelImpl {
+   public double dot(double[] a, int aOffset, double[] b, int bOffset,
+                     int length) {
+      double sum = 0.0;
+      for (int i = 0; i < length; ++i) {
+         sum += a[aOffset + i] * b[bOffset + i];
+      }
+      return sum;
+   }
+
+   public void axpy(double alpha, double[] x, int xOffset,
+                    double[] y, int yOffset, int length) {
+      for (int i = 0; i < length; ++i) {
+         y[yOffset + i] += alpha * x[xOffset + i];
+      }
+   }
+
+   public void scale(double alpha, double[] x, int xOffset,
+                     double[] y, int yOffset, int length) {
+      for (int i = 0; i < length; ++i) {
+         y[yOffset + i] = alpha * x[xOffset + i];
+      }
+   }
+
+   public float dot(float[] a, int aOffset, float[] b, int bOffset,
+                    int length) {
+      float sum = 0.0f;
+      for (int i = 0; i < length; ++i) {
+         sum += a[aOffset + i] * b[bOffset + i];
+      }
+      return sum;
+   }
+
+   public void axpy(float alpha, float[] x, int xOffset,
+                    float[] y, int yOffset, int length) {
+      for (int i = 0; i < length; ++i) {
+         y[yOffset + i] += alpha * x[xOffset + i];
+      }
+   }
+
+   public int dot(byte[] a, int aOffset, byte[] b, int bOffset,
+                  int length) {
+      int sum = 0;
+      for (int i = 0; i < length; ++i) {
+         sum += a[aOffset + i] * b[bOffset + i];
+      }
+      return sum;
+   }
+}
@@ -0,0 +1,49 @@
+package network;
+
+/**
+ * Plain stochastic gradient descent.
+ * params[i] += learningRate * g[i]
+ */
+public class SgdOptimizer implements Optimizer {
+   /** Learning rate. */
+   private final double learningRate;
+
+   /**
+    * Constructor.
+    * @param learningRate learning rate
+    */
+   public SgdOptimizer(double learningRate) {
+      this.learningRate = learningRate;
+   }
+
+   /**
+    * Does nothing; plain descent keeps no state between steps.
+    */
+   public void step() { }
+
+   /**
+    * Adds the scaled gradient times the learning rate to each parameter.
+    * @param slot parameter slot index
+    * @param params parameters to update
+    * @param gradients gradient for each parameter
+    * @param gradientScale scale applied to each gradient
+    */
+   public void update(int slot, double[] params, double[] gradients,
+                      double gradientScale) {
+      Kernels.axpy(learningRate * gradientScale, gradients, 0,
+                   params, 0, params.length);
+   }
+
+   /**
+    * Does nothing; plain descent keeps no state.
+    */
+   public void reset() { }
+
+   /**
+    * Creates an optimizer with the same learning rate.
+    * @return fresh optimizer
+    */
+   public Optimizer copy() {
+      return new SgdOptimizer(learningRate);
+   }
+}
@@ -1,32 +1,67 @@
 package network;
 
-import java.util.HashMap;
-import java.util.Random;
-
 /**
  * Models the Sigmoid function using precalculated values to speed up computation.
  */
 public class Sigmoid {
+   /** Default estimation granularity in points per integer. */
+   private static final int kDefaultGranularity = 1000;
+
+   /** Default estimation bounds. */
+   private static final double kDefaultEstimationBounds = 10;
+
+   /** Default estimator, used by the static calculation. */
+   private static final Sigmoid kDefault =
+      new Sigmoid(kDefaultGranularity, kDefaultEstimationBounds);
+
    /** Estimation granularity in points per integer. */
-   private static final int kGranularity = 1000;
+   private final int granularity;
 
    /** Estimation bounds. */
-   private static final int kEstimationBounds = 10;
+   private final double bounds;
+
+   /**
+    * Table of Sigmoid outputs.
+    * Entry i holds the Sigmoid of (i / granularity - bounds).
+    */
+   private final double[] table;
+
+   /** Saturation value returned below the lower bound. */
+   private final double lowerValue;
+   /** Saturation value returned above the upper bound. */
+   private final double upperValue;
 
    /**
-    * Map of values to Sigmoid outputs.
-    * Inputs are multiplied by granularity so they are discrete.
+    * Constructor.
+    * Precalculates the table of Sigmoid outputs.
+    * @param granularity estimation granularity in points per integer
+    * @param bounds estimation bounds; inputs outside [-bounds, bounds]
+    *               saturate
     */
-   private static HashMap<Integer, Double> precalculated;
-   static {
-      precalculated = new HashMap<Integer, Double>();
-
-      for (int i = -kEstimationBounds; i <= kEstimationBounds; ++i) {
-         for (int tick = 0; tick < kGranularity; ++tick) {
-            precalculated.put(i * kGranularity + tick,
-               trueCalculate((double) i + (double)tick / kGranularity));
-         }
+   public Sigmoid(int granularity, double bounds) {
+      if (granularity <= 0 || !(bounds > 0))
+         throw new IllegalArgumentException("Invalid Sigmoid estimation!");
+
+      this.granularity = granularity;
+      this.bounds = bounds;
+
+      // One extra entry guards interpolation at the upper bound.
+      int points = (int) Math.ceil(2 * bounds * granularity) + 2;
+      table = new double[points];
+      for (int i = 0; i < points; ++i) {
+         table[i] = trueCalculate((double) i / granularity - bounds);
       }
+
+      lowerValue = trueCalculate(-bounds);
+      upperValue = trueCalculate(bounds);
+   }
+
+   /**
+    * Gets the default estimator.
+    * @return default estimator
+    */
+   public static Sigmoid getDefault() {
+      return kDefault;
    }
 
    /**
@@ -39,42 +74,102 @@ public class Sigmoid {
    }
 
    /**
-    * Performs interpolation to estimate the sigmoid function.
+    * Performs interpolation to estimate the sigmoid function using the
+    * default estimator.
     * @param x input value
     * @return estimated sigmoid value
     */
    public static double calculate(double x) {
-      try {
-         if (Double.compare(x, kEstimationBounds) > 0) return 1.0;
-         if (Double.compare(x, -kEstimationBounds) < 0) return -1.0;
-
-         // Calculate interpolation bounds.
-         int x0 = (int) Math.floor(x * kGranularity);
-         int x1 = (int) Math.ceil(x * kGranularity);
-
-         // Calculate interpolation values.
-         double y0 = precalculated.get(x0);
-         double y1 = precalculated.get(x1);
-         return interpolate(x, y0, y1,
-            (double)x0 / kGranularity, (double)x1 / kGranularity);
-      } catch (Exception e) {
-         System.out.println("Sigmoid failed on input " + x);
-         System.exit(0);
-         return 0.0;
+      return kDefault.estimate(x);
+   }
+
+   /**
+    * Performs interpolation to estimate the sigmoid function.
+    * Inputs outside the estimation bounds saturate to the Sigmoid value
+    * at the nearest bound.
+    * @param x input value
+    * @return estimated sigmoid value
+    */
+   public double estimate(double x) {
+      if (x >= bounds) return upperValue;
+      if (x <= -bounds) return lowerValue;
+
+      // Calculate interpolation position.
+      double position = (x + bounds) * granularity;
+      int index = (int) position;
+
+      // Interpolate between neighboring table entries.
+      double y0 = table[index];
+      return y0 + (table[index + 1] - y0) * (position - index);
+   }
+
+   /**
+    * Getter for granularity.
+    * @return estimation granularity in points per integer
+    */
+   public int getGranularity() {
+      return granularity;
+   }
+
+   /**
+    * Getter for bounds.
+    * @return estimation bounds
+    */
+   public double getBounds() {
+      return bounds;
+   }
+
+   /**
+    * Calculates the maximum absolute error of the estimation against
+    * the true Sigmoid, sampled evenly across twice the estimation bounds.
+    * @param samples number of samples
+    * @return maximum absolute error
+    */
+   public double calcMaxError(int samples) {
+      double maxError = 0.0;
+      for (int i = 0; i < samples; ++i) {
+         double x = sample(i, samples);
+         maxError = Math.max(maxError, Math.abs(estimate(x) - trueCalculate(x)));
       }
+      return maxError;
+   }
+
+   /**
+    * Calculates the mean absolute error of the estimation against
+    * the true Sigmoid, sampled evenly across twice the estimation bounds.
+    * @param samples number of samples
+    * @return mean absolute error
+    */
+   public double calcMeanError(int samples) {
+      double totalError = 0.0;
+      for (int i = 0; i < samples; ++i) {
+         double x = sample(i, samples);
+         totalError += Math.abs(estimate(x) - trueCalculate(x));
+      }
+      return totalError / samples;
+   }
+
+   /**
+    * Returns a report of the estimation accuracy.
+    * @param samples number of samples
+    * @return accuracy report
+    */
+   public String getAccuracyReport(int samples) {
+      return String.format(
+         "Sigmoid (granularity %d, bounds %.2f, %d entries)\n" +
+         "  Max error: %.3e\n" +
+         "  Mean error: %.3e",
+         granularity, bounds, table.length,
+         calcMaxError(samples), calcMeanError(samples));
    }
 
    /**
-    * Calculates a linear interpolation.
-    * @param x input
-    * @param y0 left y value
-    * @param y1 right y value
-    * @param x0 left x value
-    * @param x1 right x value
-    * @return interpolated result
+    * Gets an evenly spaced sample point across twice the estimation bounds.
+    * @param i sample index
+    * @param samples number of samples
+    * @return sample point
     */
-   private static double interpolate(double x, double y0, double y1,
-                                     double x0, double x1) {
-      return y0 + ((y1 - y0) * ((x - x0) / (x1 - x0)));
+   private double sample(int i, int samples) {
+      return -2 * bounds + 4 * bounds * i / Math.max(1, samples - 1);
    }
 }
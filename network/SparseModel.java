@@ -0,0 +1,188 @@
+package network;
+
+/**
+ * Represents an immutable copy of a network for inference, with sparse
+ * layers stored in compressed sparse row (CSR) form.
+ * Each layer's zero weights, such as those left by pruning, are dropped
+ * if few enough weights remain for the sparse product to beat the dense
+ * one; otherwise the layer is kept dense. The model may be fired from any
+ * number of threads.
+ */
+public class SparseModel implements Model {
+   /**
+    * Largest fraction of nonzero weights for which a layer is stored
+    * sparse. Sparse products load each input indirectly, so they only pay
+    * off once most weights are gone.
+    */
+   public static final double kMaxSparseDensity = 0.4;
+
+   /** Layer sizes. */
+   private final int[] layerSizes;
+
+   /** Dense weight matrix of each layer (size x inputs), or null. */
+   private final double[][] weights;
+
+   /** Nonzero weights of each sparse layer, row by row, or null. */
+   private final double[][] values;
+
+   /** Input index of each nonzero weight, or null. */
+   private final int[][] columns;
+
+   /** Start of each row within the nonzero weights, plus the end. */
+   private final int[][] rowStarts;
+
+   /** Bias vector of each layer. */
+   private final double[][] biases;
+
+   /** Activation function of each layer. */
+   private final Activation[] activations;
+
+   /**
+    * Constructor.
+    * Copies the network's current weights, storing each layer sparse if
+    * its density is at most kMaxSparseDensity.
+    * @param network network to copy
+    */
+   public SparseModel(Network network) {
+      this(network, kMaxSparseDensity);
+   }
+
+   /**
+    * Density threshold constructor.
+    * @param network network to copy
+    * @param maxSparseDensity largest fraction of nonzero weights for which
+    *                         a layer is stored sparse
+    */
+   public SparseModel(Network network, double maxSparseDensity) {
+      int numLayers = network.getNumLayers();
+      this.layerSizes = network.getLayerSizes().clone();
+      this.weights = new double[numLayers][];
+      this.values = new double[numLayers][];
+      this.columns = new int[numLayers][];
+      this.rowStarts = new int[numLayers][];
+      this.biases = new double[numLayers][];
+      this.activations = new Activation[numLayers];
+
+      for (int l = 0; l < numLayers; ++l) {
+         Layer layer = network.getLayer(l);
+         double[] layerWeights = layer.getWeights();
+         biases[l] = layer.getBiases().clone();
+         activations[l] = layer.getActivation();
+
+         int nonzero = 0;
+         for (int i = 0; i < layerWeights.length; ++i) {
+            if (layerWeights[i] != 0.0) ++nonzero;
+         }
+         if (nonzero > maxSparseDensity * layerWeights.length) {
+            weights[l] = layerWeights.clone();
+         } else {
+            compress(l, layerWeights, nonzero);
+         }
+      }
+   }
+
+   /**
+    * Compresses a layer's weights into CSR form.
+    * @param l layer index
+    * @param layerWeights weights (size x inputs, row-major)
+    * @param nonzero number of nonzero weights
+    */
+   private void compress(int l, double[] layerWeights, int nonzero) {
+      int numInputs = layerSizes[l];
+      int size = layerSizes[l + 1];
+      values[l] = new double[nonzero];
+      columns[l] = new int[nonzero];
+      rowStarts[l] = new int[size + 1];
+
+      int k = 0;
+      for (int n = 0, row = 0; n < size; ++n, row += numInputs) {
+         rowStarts[l][n] = k;
+         for (int i = 0; i < numInputs; ++i) {
+            if (layerWeights[row + i] != 0.0) {
+               values[l][k] = layerWeights[row + i];
+               columns[l][k] = i;
+               ++k;
+            }
+         }
+      }
+      rowStarts[l][size] = k;
+   }
+
+   /**
+    * Getter for layer sizes.
+    * @return number of neurons per layer (index 0 is input size)
+    */
+   public int[] getLayerSizes() {
+      return layerSizes.clone();
+   }
+
+   /**
+    * Determines whether a layer is stored sparse.
+    * @param layerIndex layer index
+    * @return whether the layer is in CSR form
+    */
+   public boolean isSparse(int layerIndex) {
+      return weights[layerIndex] == null;
+   }
+
+   /**
+    * Gets the number of bytes held by the weights and biases.
+    * @return model size in bytes
+    */
+   public long getSizeBytes() {
+      long bytes = 0;
+      for (int l = 0; l < biases.length; ++l) {
+         bytes += 8L * biases[l].length;
+         if (isSparse(l)) {
+            bytes += 12L * values[l].length + 4L * rowStarts[l].length;
+         } else {
+            bytes += 8L * weights[l].length;
+         }
+      }
+      return bytes;
+   }
+
+   /**
+    * Fires the model and returns output.
+    * @param input input signals
+    * @return output signals
+    */
+   public double[] fire(double[] input) {
+      // Validate input size.
+      if (input.length != layerSizes[0])
+         throw new RuntimeException("Model fired with improper input!");
+
+      // Thread input through layers.
+      for (int l = 0; l < biases.length; ++l) {
+         double[] layerBiases = biases[l];
+         int numInputs = layerSizes[l];
+         double[] output = new double[layerSizes[l + 1]];
+
+         // Calculate activation inputs.
+         if (isSparse(l)) {
+            double[] layerValues = values[l];
+            int[] layerColumns = columns[l];
+            int[] starts = rowStarts[l];
+            for (int n = 0; n < output.length; ++n) {
+               double sum = layerBiases[n];
+               for (int k = starts[n]; k < starts[n + 1]; ++k) {
+                  sum += layerValues[k] * input[layerColumns[k]];
+               }
+               output[n] = sum;
+            }
+         } else {
+            double[] layerWeights = weights[l];
+            for (int n = 0, row = 0; n < output.length;
+                 ++n, row += numInputs) {
+               output[n] = layerBiases[n] +
+                  Kernels.dot(input, 0, layerWeights, row, numInputs);
+            }
+         }
+
+         // Calculate signal outputs.
+         activations[l].apply(output, 0, output.length);
+         input = output;
+      }
+      return input;
+   }
+}
@@ -1,5 +1,6 @@
 package network;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -22,14 +23,83 @@ public class Trainer {
    /** Acceptable percentage correct for learning termination. */
    private static final double kAcceptablePercentCorrect = 60;
 
-   /** Test suite. */
+   /** Default number of epochs between validation checks. */
+   private static final int kDefaultValidationInterval = 1;
+
+   /**
+    * Default number of validation checks without improvement before
+    * training stops.
+    */
+   private static final int kDefaultPatience = 10;
+
+   /** In-memory test suite, or null if training from another dataset. */
    private ArrayList<TestCase> tests;
 
+   /** Dataset streamed each epoch. */
+   private Dataset dataset;
+
+   /** Number of test cases per gradient update. */
+   private int batchSize = 1;
+
+   /** Number of worker threads for data-parallel training. */
+   private int numThreads = 1;
+
+   /** Whether worker threads update the network asynchronously. */
+   private boolean asynchronous = false;
+
+   /** Staleness of asynchronous updates in the last training run. */
+   private Histogram staleness;
+
+   /**
+    * Whether epoch metrics are gathered from the learning pass rather than
+    * a separate evaluation pass.
+    */
+   private boolean trainingTimeMetrics = false;
+
+   /** Validation dataset, or null if training is not validated. */
+   private Dataset validation;
+
+   /** Number of epochs between validation checks. */
+   private int validationInterval = kDefaultValidationInterval;
+
+   /**
+    * Number of validation checks without improvement before training
+    * stops.
+    */
+   private int patience = kDefaultPatience;
+
+   /** Publisher of trained snapshots, or null. */
+   private ModelPublisher publisher;
+
+   /** Number of epochs between published snapshots. */
+   private int publishInterval;
+
+   /** Listeners receiving training progress. */
+   private final ArrayList<TrainingListener> listeners =
+      new ArrayList<TrainingListener>();
+
+   /** Whether time spent in each layer is measured. */
+   private boolean layerTiming = false;
+
+   /** Per-thread allocation counter, or null if unsupported. */
+   private static final com.sun.management.ThreadMXBean kThreadBean =
+      getThreadBean();
+
    /**
     * Constructor.
     */
    public Trainer() {
       tests = new ArrayList<TestCase>();
+      dataset = new ListDataset(tests);
+   }
+
+   /**
+    * Dataset constructor.
+    * The dataset is streamed once per epoch and never held in memory.
+    * @param dataset dataset to train with
+    */
+   public Trainer(Dataset dataset) {
+      this.dataset = dataset;
    }
 
    /**
@@ -37,15 +107,180 @@ public class Trainer {
     * @param test test to add
     */
    public void addTest(TestCase test) {
+      if (tests == null)
+         throw new RuntimeException("Cannot add tests to a streamed dataset!");
       tests.add(test);
    }
 
+   /**
+    * Sets the batch size.
+    * A batch size of one teaches the network one test case at a time.
+    * @param batchSize number of test cases per gradient update
+    */
+   public void setBatchSize(int batchSize) {
+      if (batchSize < 1)
+         throw new IllegalArgumentException("Invalid batch size!");
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Sets the number of worker threads.
+    * With more than one thread, each batch is split across the threads, so
+    * synchronous training needs a batch size greater than one.
+    * @param numThreads number of worker threads
+    */
+   public void setThreads(int numThreads) {
+      if (numThreads < 1)
+         throw new IllegalArgumentException("Invalid thread count!");
+      this.numThreads = numThreads;
+   }
+
+   /**
+    * Sets whether worker threads update the network asynchronously.
+    * Asynchronous workers teach one test case at a time and write updates
+    * into the shared weights without locks or barriers, so updates may be
+    * calculated from stale weights. Only used with more than one thread;
+    * the batch size is ignored, and the network must not have an
+    * optimizer.
+    * @param asynchronous whether to update asynchronously
+    */
+   public void setAsynchronous(boolean asynchronous) {
+      this.asynchronous = asynchronous;
+   }
+
+   /**
+    * Gets the staleness of asynchronous updates in the last training run,
+    * in updates committed by other threads between reading the weights
+    * and writing the update. Staleness is sampled once every
+    * AsyncLearner.kDefaultStalenessSampling updates of each worker.
+    * @return staleness histogram, or null if the last run was synchronous
+    */
+   public Histogram getStaleness() {
+      return staleness;
+   }
+
+   /**
+    * Sets whether epoch metrics are gathered during learning.
+    * Training-time metrics reuse the outputs computed while learning, so
+    * no extra forward pass is needed, but each output is taken before
+    * that test case's update. Multi-threaded training always evaluates
+    * separately.
+    * @param trainingTimeMetrics whether to gather metrics during learning
+    */
+   public void setTrainingTimeMetrics(boolean trainingTimeMetrics) {
+      this.trainingTimeMetrics = trainingTimeMetrics;
+   }
+
+   /**
+    * Sets the validation dataset.
+    * When set, validation loss is checked periodically, the best weights
+    * seen are kept, and training stops once validation loss stops
+    * improving. The best weights are restored when training ends.
+    * @param validation validation dataset, or null to disable validation
+    */
+   public void setValidation(Dataset validation) {
+      this.validation = validation;
+   }
+
+   /**
+    * Sets the number of epochs between validation checks.
+    * @param validationInterval number of epochs between checks
+    */
+   public void setValidationInterval(int validationInterval) {
+      if (validationInterval < 1)
+         throw new IllegalArgumentException("Invalid validation interval!");
+      this.validationInterval = validationInterval;
+   }
+
+   /**
+    * Sets the number of validation checks without improvement before
+    * training stops.
+    * @param patience number of checks without improvement
+    */
+   public void setPatience(int patience) {
+      if (patience < 1)
+         throw new IllegalArgumentException("Invalid patience!");
+      this.patience = patience;
+   }
+
+   /**
+    * Sets a publisher to receive snapshots while training.
+    * A snapshot is published every given number of epochs and when
+    * training ends, so inference can fire the latest weights while the
+    * network keeps learning. With validation, the best weights so far are
+    * published instead of the current ones, and only when they improve.
+    * @param publisher publisher, or null to disable publishing
+    * @param publishInterval number of epochs between snapshots
+    */
+   public void setPublisher(ModelPublisher publisher, int publishInterval) {
+      if (publishInterval < 1)
+         throw new IllegalArgumentException("Invalid publish interval!");
+      this.publisher = publisher;
+      this.publishInterval = publishInterval;
+   }
+
+   /**
+    * Adds a listener to receive training progress.
+    * With no listeners, training is silent.
+    * @param listener listener to add
+    */
+   public void addListener(TrainingListener listener) {
+      listeners.add(listener);
+   }
+
+   /**
+    * Removes a training listener.
+    * @param listener listener to remove
+    */
+   public void removeListener(TrainingListener listener) {
+      listeners.remove(listener);
+   }
+
+   /**
+    * Sets whether time spent in each layer is measured and reported in
+    * epoch statistics.
+    * Layer timing costs a few clock reads per layer per test case, and is
+    * only available when learning on the training thread.
+    * @param layerTiming whether to time layers
+    */
+   public void setLayerTiming(boolean layerTiming) {
+      this.layerTiming = layerTiming;
+   }
+
    /**
     * Trains a network with the test suite.
+    * Progress is reported to the trainer's listeners.
     * @param network network to train
     */
    public void train(Network network) {
-      if (tests.size() == 0) {
+      train(network, Integer.MAX_VALUE, true);
+   }
+
+   /**
+    * Fine-tunes an already trained network, e.g. after pruning, for a
+    * number of epochs.
+    * The network is never reset and does not stop at an acceptable state,
+    * but still stops early if validation loss plateaus.
+    * Progress is reported to the trainer's listeners.
+    * @param network network to fine-tune
+    * @param epochs number of epochs
+    */
+   public void fineTune(Network network, int epochs) {
+      if (epochs < 1)
+         throw new IllegalArgumentException("Invalid epoch count!");
+      train(network, epochs, false);
+   }
+
+   /**
+    * Trains a network with the test suite.
+    * @param network network to train
+    * @param maxEpochs maximum number of epochs
+    * @param untilAcceptable whether to stop at an acceptable state, and
+    *                        reset the network if it stalls
+    */
+   private void train(Network network, int maxEpochs,
+                      boolean untilAcceptable) {
+      if (isEmpty()) {
          System.out.println("No tests!");
          return;
       }
@@ -53,68 +288,430 @@ public class Trainer {
       /* LEARNING */
       //////////////
 
-      // Counter for stale networks.
-      int staleCounter = 0;
+      // Workspace for learning.
+      Workspace workspace = network.createWorkspace();
+
+      // Parallel or asynchronous learner, if training with multiple
+      //   threads.
+      ParallelLearner learner = null;
+      AsyncLearner asyncLearner = null;
+      staleness = null;
+      if (numThreads > 1 && asynchronous) {
+         if (network.getOptimizer() != null)
+            throw new IllegalStateException(
+               "Asynchronous training does not support optimizers!");
+         asyncLearner = new AsyncLearner(numThreads);
+         staleness = asyncLearner.getStaleness();
+      } else if (numThreads > 1) {
+         // Data-parallel batches change the update rule, so they are never
+         //   chosen implicitly for per-sample learning.
+         if (batchSize == 1)
+            throw new IllegalStateException(
+               "Parallel training requires a batch size!");
+         learner = new ParallelLearner(numThreads);
+      }
+      boolean onThisThread = learner == null && asyncLearner == null;
+
+      // The learners' pools are released however training ends.
+      try {
+         // Per-layer timing, on this thread only.
+         LayerTimings timings = null;
+         if (layerTiming && onThisThread) {
+            workspace.setTimingEnabled(true);
+            timings = workspace.getTimings();
+         }
+
+         // Counter for stale networks.
+         int staleCounter = 0;
 
-      // Test Errors.
-      double testError = network.calcTotalTestError(tests);
-      double prevTestError = 10000.0;
+         // Epoch evaluation.
+         Evaluation evaluation = network.createEvaluation();
+         network.evaluate(dataset, evaluation);
 
-      // Percentage of tests passed.
-      double percentCorrect = calcPercentCorrect(tests, network);
-      double prevPercentCorrect = 0;
+         // Test Errors.
+         double testError = evaluation.getTestError();
+         double prevTestError = 10000.0;
 
-      System.out.println("Total test error before learning: " + testError);
-      System.out.println("Passing percentage: %" + percentCorrect);
+         // Percentage of tests passed.
+         double percentCorrect = evaluation.getPercentCorrect();
+         double prevPercentCorrect = 0;
 
-      // Teach the network until the error is acceptable.
-      // Loop is broken when conditions are met.
-      while (true) {
-         // Teach the network using the tests.
-         for (int i = 0; i < tests.size(); ++i) {
-            network.learn(tests.get(i));
+         for (TrainingListener listener : listeners) {
+            listener.trainingStarted(network, evaluation);
          }
 
-         // Calculate error and percentage correct.
-         testError = network.calcTotalTestError(tests);
-         percentCorrect = calcPercentCorrect(tests, network);
-
-         // Break out of the loop if we've hit an acceptable state.
-         if (testError < kAcceptableTestError &&
-             percentCorrect > kAcceptablePercentCorrect) break;
-
-         // Determine if the network needs to be reset.
-         // If it is unacceptable, and is either stale or has regressed
-         //   significantly in error, it should be reset.
-         if (staleCounter > kStaleThreshold ||
-             testError - prevTestError > kErrorRegressionThreshold) {
-            network.reset();
-            staleCounter = 0;
-            System.out.println("====================");
-            System.out.println("Resetting network...");
-            System.out.println("====================");
-         // If the error and percentage correct have not changed significantly,
-         //   increase the stale counter.
-         } else if ((Double.compare(testError, 100) != 0 && 
-                     Double.compare(testError, prevTestError) == 0) ||
-                    Double.compare(percentCorrect, prevPercentCorrect) == 0) {
-            ++staleCounter;
+         // Validation state.
+         // The best weights are copied into a snapshot allocated once, so
+         //   they survive network resets without repeated clones.
+         Evaluation validationEvaluation = null;
+         Network best = null;
+         double bestValidationError = Double.POSITIVE_INFINITY;
+         int checksSinceBest = 0;
+         boolean bestPublished = true;
+         int epoch = 0;
+         if (validation != null) {
+            validationEvaluation = network.createEvaluation();
+            best = network.clone();
+         }
+
+         // Teach the network until the error is acceptable.
+         // Loop is broken when conditions are met.
+         while (true) {
+            long startNanos = System.nanoTime();
+            long startBytes = getAllocatedBytes();
+            if (timings != null) timings.clear();
+
+            // Teach the network using the tests.
+            // Metrics are gathered during learning if requested, and
+            //   otherwise in a single evaluation pass.
+            evaluation.clear();
+            long learnNanos;
+            if (trainingTimeMetrics && onThisThread) {
+               runEpoch(network, workspace, null, null, evaluation);
+               learnNanos = System.nanoTime() - startNanos;
+            } else {
+               runEpoch(network, workspace, learner, asyncLearner, null);
+               learnNanos = System.nanoTime() - startNanos;
+               network.evaluate(dataset, evaluation);
+            }
+
+            ++epoch;
+
+            // Calculate error and percentage correct.
+            testError = evaluation.getTestError();
+            percentCorrect = evaluation.getPercentCorrect();
+
+            // Check validation loss, keeping the best weights.
+            double validationError = Double.NaN;
+            boolean plateaued = false;
+            if (validation != null && epoch % validationInterval == 0) {
+               validationEvaluation.clear();
+               network.evaluate(validation, validationEvaluation);
+               validationError = validationEvaluation.getTestError();
+
+               if (validationError < bestValidationError) {
+                  bestValidationError = validationError;
+                  best.copyFrom(network);
+                  bestPublished = false;
+                  checksSinceBest = 0;
+               } else {
+                  plateaued = ++checksSinceBest >= patience;
+               }
+            }
+
+            // Report the epoch.
+            if (!listeners.isEmpty()) {
+               long endBytes = getAllocatedBytes();
+               LayerTimings epochTimings = null;
+               if (timings != null) {
+                  epochTimings = new LayerTimings(timings.getNumLayers());
+                  epochTimings.copyFrom(timings);
+               }
+               EpochStats stats = new EpochStats(epoch, evaluation.getTotal(),
+                  learnNanos, System.nanoTime() - startNanos,
+                  (startBytes < 0) ? -1 : endBytes - startBytes,
+                  testError, percentCorrect, validationError, epochTimings);
+               for (TrainingListener listener : listeners) {
+                  listener.epochCompleted(stats);
+               }
+            }
+
+            // Stop once validation loss has plateaued.
+            if (plateaued) {
+               for (TrainingListener listener : listeners) {
+                  listener.earlyStopped(epoch, bestValidationError);
+               }
+               break;
+            }
+
+            // Publish a snapshot for inference.
+            if (publisher != null && epoch % publishInterval == 0) {
+               if (validation == null) {
+                  publisher.publish(network);
+               } else if (!bestPublished) {
+                  publisher.publish(best);
+                  bestPublished = true;
+               }
+            }
+
+            // Break out of the loop after the last epoch, or if we've hit an
+            //   acceptable state. Fine-tuning never stops or resets here.
+            if (epoch >= maxEpochs) break;
+            if (!untilAcceptable) continue;
+            if (isAcceptable(testError, percentCorrect)) break;
+
+            // Determine if the network needs to be reset.
+            // If it is unacceptable, and is either stale or has regressed
+            //   significantly in error, it should be reset.
+            if (staleCounter > kStaleThreshold ||
+                testError - prevTestError > kErrorRegressionThreshold) {
+               network.reset();
+               staleCounter = 0;
+               for (TrainingListener listener : listeners) {
+                  listener.networkReset(epoch);
+               }
+            // If the error and percentage correct have not changed
+            //   significantly, increase the stale counter.
+            } else if ((Double.compare(testError, 100) != 0 &&
+                        Double.compare(testError, prevTestError) == 0) ||
+                       Double.compare(percentCorrect,
+                                      prevPercentCorrect) == 0) {
+               ++staleCounter;
+            } else {
+               staleCounter = 0;
+            }
+            prevTestError = testError;
+            prevPercentCorrect = percentCorrect;
+         }
+
+         // Restore the best weights if the final weights validate worse.
+         if (validation != null) {
+            validationEvaluation.clear();
+            network.evaluate(validation, validationEvaluation);
+            if (validationEvaluation.getTestError() > bestValidationError) {
+               network.copyFrom(best);
+            }
+         }
+         if (publisher != null) publisher.publish(network);
+
+         evaluation.clear();
+         network.evaluate(dataset, evaluation);
+         for (TrainingListener listener : listeners) {
+            listener.trainingFinished(network, evaluation);
+         }
+      } finally {
+         if (learner != null) learner.shutdown();
+         if (asyncLearner != null) asyncLearner.shutdown();
+      }
+   }
+
+   /**
+    * Trains a population of independently initialized networks at once,
+    * pruning stragglers and returning the first network to reach an
+    * acceptable state.
+    * Members read the dataset concurrently, so it must not be an
+    * InputPipeline unless the population has a single member.
+    * @param prototype network providing shape, activations, loss and
+    *                  learning settings
+    * @param populationSize number of networks trained at once
+    * @param seed seed for the first network
+    * @return trained network
+    */
+   public Network trainPopulation(Network prototype, int populationSize,
+                                  long seed) {
+      if (isEmpty()) {
+         System.out.println("No tests!");
+         return prototype;
+      }
+      Network network =
+         new PopulationTrainer(this, prototype, populationSize, seed).train();
+
+      Evaluation evaluation = network.createEvaluation();
+      network.evaluate(dataset, evaluation);
+      for (TrainingListener listener : listeners) {
+         listener.trainingFinished(network, evaluation);
+      }
+      return network;
+   }
+
+   /**
+    * Reports a network reset to the listeners.
+    * Population members reset from their own threads, so delivery is
+    * serialized.
+    * @param epoch epoch after which the network was reset
+    */
+   synchronized void fireNetworkReset(int epoch) {
+      for (TrainingListener listener : listeners) {
+         listener.networkReset(epoch);
+      }
+   }
+
+   /**
+    * Determines whether a network has reached an acceptable state.
+    * @param testError total test error
+    * @param percentCorrect percentage of tests passed
+    * @return whether learning can terminate
+    */
+   boolean isAcceptable(double testError, double percentCorrect) {
+      return testError < kAcceptableTestError &&
+             percentCorrect > kAcceptablePercentCorrect;
+   }
+
+   /**
+    * Getter for the dataset.
+    * @return dataset streamed each epoch
+    */
+   public Dataset getDataset() {
+      return dataset;
+   }
+
+   /**
+    * Determines whether the trainer has an empty in-memory suite.
+    * Streamed datasets are assumed to be non-empty.
+    * @return whether there are no tests
+    */
+   private boolean isEmpty() {
+      return tests != null && tests.size() == 0;
+   }
+
+   /**
+    * Teaches the network on this thread using each test in the suite once.
+    * @param network network to teach
+    * @param workspace workspace to learn in
+    */
+   public void runEpoch(Network network, Workspace workspace) {
+      runEpoch(network, workspace, null, null, null);
+   }
+
+   /**
+    * Teaches the network using each test in the suite once.
+    * @param network network to teach
+    * @param workspace workspace to learn in
+    * @param learner parallel learner, or null
+    * @param asyncLearner asynchronous learner, or null
+    * @param evaluation evaluation to record outputs in while learning on
+    *                   this thread, or null
+    */
+   private void runEpoch(Network network, Workspace workspace,
+                         ParallelLearner learner, AsyncLearner asyncLearner,
+                         Evaluation evaluation) {
+      // Asynchronous workers take test cases from the pass themselves.
+      if (asyncLearner != null) {
+         if (dataset instanceof PackedDataset) {
+            asyncLearner.learn(network, (PackedDataset) dataset);
          } else {
-            System.out.printf("Percent Correct: %.6f%%  |  ", percentCorrect);
-            System.out.printf("Test error: %.6f\n", testError);
-            staleCounter = 0;
+            DatasetReader reader = dataset.open();
+            try {
+               asyncLearner.learn(network, reader);
+            } finally {
+               reader.close();
+            }
          }
-         prevTestError = testError;
-         prevPercentCorrect = percentCorrect;
+         return;
       }
 
-      System.out.println("Total test error after learning: " +
-         network.calcTotalTestError(tests));
-      System.out.println("Passing percentage: %" +
-         calcPercentCorrect(tests, network));
-      System.out.println();
+      // Packed datasets are taught straight from their matrices.
+      if (dataset instanceof PackedDataset) {
+         runPackedEpoch(network, (PackedDataset) dataset, workspace,
+                        learner, evaluation);
+         return;
+      }
+
+      DatasetReader reader = dataset.open();
+      try {
+         if (learner != null) {
+            runParallelEpoch(network, reader, learner);
+         } else if (batchSize == 1) {
+            TestCase test;
+            while ((test = reader.next()) != null) {
+               network.learn(test, workspace, evaluation);
+            }
+         } else {
+            TestCase test;
+            int count = 0;
+            while ((test = reader.next()) != null) {
+               network.accumulate(test, workspace, evaluation);
+               if (++count == batchSize) {
+                  network.commitBatch(workspace);
+                  count = 0;
+               }
+            }
+            // Commit the final partial batch.
+            network.commitBatch(workspace);
+         }
+      } finally {
+         reader.close();
+      }
+   }
+
+   /**
+    * Teaches the network using each row of a packed dataset once, in the
+    * dataset's current order.
+    * @param network network to teach
+    * @param packed packed dataset
+    * @param workspace workspace to learn in
+    * @param learner parallel learner, or null to learn on this thread
+    * @param evaluation evaluation to record outputs in while learning on
+    *                   this thread, or null
+    */
+   private void runPackedEpoch(Network network, PackedDataset packed,
+                               Workspace workspace, ParallelLearner learner,
+                               Evaluation evaluation) {
+      int size = packed.size();
+      if (learner != null) {
+         for (int i = 0; i < size; i += batchSize) {
+            learner.learnBatch(network, packed, i,
+                               Math.min(i + batchSize, size));
+         }
+      } else if (batchSize == 1) {
+         for (int i = 0; i < size; ++i) {
+            network.learn(packed, packed.getRow(i), workspace, evaluation);
+         }
+      } else {
+         for (int i = 0; i < size; i += batchSize) {
+            network.learnBatch(packed, i, Math.min(i + batchSize, size),
+                               workspace, evaluation);
+         }
+      }
+   }
+
+   /**
+    * Teaches the network using each test in a pass in data-parallel
+    * batches.
+    * Test cases are copied into a reusable batch buffer, since readers may
+    * reuse the test cases they return.
+    * @param network network to teach
+    * @param reader dataset pass
+    * @param learner parallel learner
+    */
+   private void runParallelEpoch(Network network, DatasetReader reader,
+                                 ParallelLearner learner) {
+      ArrayList<TestCase> batch = new ArrayList<TestCase>(batchSize);
+      int count = 0;
+
+      TestCase test;
+      while ((test = reader.next()) != null) {
+         // Grow the buffer on the first batch, then reuse it.
+         if (count == batch.size()) {
+            batch.add(new TestCase(new double[test.inputs.length],
+                                   new double[test.outputs.length]));
+         }
+         TestCase slot = batch.get(count++);
+         System.arraycopy(test.inputs, 0, slot.inputs, 0, test.inputs.length);
+         System.arraycopy(test.outputs, 0, slot.outputs, 0,
+            test.outputs.length);
+
+         if (count == batchSize) {
+            learner.learnBatch(network, batch, 0, count);
+            count = 0;
+         }
+      }
+      if (count > 0) learner.learnBatch(network, batch, 0, count);
+   }
+
+   /**
+    * Gets the bytes allocated so far by the current thread.
+    * @return allocated bytes, or -1 if unsupported
+    */
+   private static long getAllocatedBytes() {
+      return (kThreadBean == null)
+         ? -1
+         : kThreadBean.getCurrentThreadAllocatedBytes();
+   }
 
-      System.out.println(network);
+   /**
+    * Gets the thread bean used to count allocations.
+    * @return thread bean, or null if allocation counting is unsupported
+    */
+   private static com.sun.management.ThreadMXBean getThreadBean() {
+      java.lang.management.ThreadMXBean bean =
+         ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean) bean)
+             .isThreadAllocatedMemorySupported()) {
+         return (com.sun.management.ThreadMXBean) bean;
+      }
+      return null;
    }
 
    /**
@@ -125,30 +722,56 @@ public class Trainer {
     */
    public static double calcPercentCorrect(ArrayList<TestCase> tests,
                                            Network network) {
-      int correct = 0;
-
-      // Run each test.
-      for (int i = 0; i < tests.size(); ++i) {
-         TestCase test = tests.get(i);
-         double[] output = network.fire(test.inputs);
-
-         int outputMaxIndex = 0;
-         double outputMax = output[0];
+      Evaluation evaluation = new Evaluation(network.getNumOutputs());
+      network.evaluate(tests, evaluation);
+      return evaluation.getPercentCorrect();
+   }
 
-         int answerMaxIndex = 0;
-         double answerMax = test.outputs[0];
+   /**
+    * Calculates the percentage of test cases passed in a dataset.
+    * @param dataset test dataset
+    * @param network network to test
+    * @return percentage of tests passed
+    */
+   public static double calcPercentCorrect(Dataset dataset,
+                                           Network network) {
+      Evaluation evaluation = new Evaluation(network.getNumOutputs());
+      network.evaluate(dataset, evaluation);
+      return evaluation.getPercentCorrect();
+   }
 
-         // Determine if network guessed correctly.
-         for (int j = 0; j < output.length; ++j) {
-            double out = output[j];
-            double ans = test.outputs[j];
+   /**
+    * Calculates the percentage of test cases passed by any model, such as
+    * a snapshot or a quantized model.
+    * @param tests test suite
+    * @param model model to test
+    * @return percentage of tests passed
+    */
+   public static double calcPercentCorrect(ArrayList<TestCase> tests,
+                                           Model model) {
+      return calcPercentCorrect(new ListDataset(tests), model);
+   }
 
-            if (out > outputMax) outputMaxIndex = j;
-            if (ans > answerMax) answerMaxIndex = j;
+   /**
+    * Calculates the percentage of test cases in a dataset passed by any
+    * model.
+    * @param dataset test dataset
+    * @param model model to test
+    * @return percentage of tests passed
+    */
+   public static double calcPercentCorrect(Dataset dataset, Model model) {
+      int[] layerSizes = model.getLayerSizes();
+      Evaluation evaluation =
+         new Evaluation(layerSizes[layerSizes.length - 1]);
+      DatasetReader reader = dataset.open();
+      try {
+         TestCase test;
+         while ((test = reader.next()) != null) {
+            evaluation.add(model.fire(test.inputs), 0, test.outputs);
          }
-         boolean passed = outputMaxIndex == answerMaxIndex;
-         if (passed) ++correct;
+      } finally {
+         reader.close();
       }
-      return 100.0 * (double) correct / tests.size();
+      return evaluation.getPercentCorrect();
    }
 }
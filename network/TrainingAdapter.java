@@ -0,0 +1,40 @@
+package network;
+
+/**
+ * Training listener that ignores every event.
+ * Extend to handle only the events of interest.
+ */
+public class TrainingAdapter implements TrainingListener {
+   /**
+    * Ignores the start of training.
+    * @param network network being trained
+    * @param evaluation evaluation of the network before learning
+    */
+   public void trainingStarted(Network network, Evaluation evaluation) { }
+
+   /**
+    * Ignores a completed epoch.
+    * @param stats epoch statistics
+    */
+   public void epochCompleted(EpochStats stats) { }
+
+   /**
+    * Ignores a network reset.
+    * @param epoch epoch after which the network was reset
+    */
+   public void networkReset(int epoch) { }
+
+   /**
+    * Ignores an early stop.
+    * @param epoch last epoch
+    * @param bestValidationError best validation error seen
+    */
+   public void earlyStopped(int epoch, double bestValidationError) { }
+
+   /**
+    * Ignores the end of training.
+    * @param network trained network
+    * @param evaluation evaluation of the trained network
+    */
+   public void trainingFinished(Network network, Evaluation evaluation) { }
+}
@@ -0,0 +1,44 @@
+package network;
+
+/**
+ * Receives progress events from a Trainer.
+ * Events are delivered on the training thread, so listeners should return
+ * quickly.
+ */
+public interface TrainingListener {
+   /**
+    * Called before the first epoch.
+    * @param network network being trained
+    * @param evaluation evaluation of the network before learning
+    */
+   void trainingStarted(Network network, Evaluation evaluation);
+
+   /**
+    * Called after each epoch.
+    * @param stats epoch statistics
+    */
+   void epochCompleted(EpochStats stats);
+
+   /**
+    * Called when the network is reset after going stale or regressing, or
+    * when population training replaces a pruned member. Population
+    * members report from their own threads.
+    * @param epoch epoch after which the network was reset
+    */
+   void networkReset(int epoch);
+
+   /**
+    * Called when training stops because validation error stopped
+    * improving.
+    * @param epoch last epoch
+    * @param bestValidationError best validation error seen
+    */
+   void earlyStopped(int epoch, double bestValidationError);
+
+   /**
+    * Called after the last epoch.
+    * @param network trained network
+    * @param evaluation evaluation of the trained network
+    */
+   void trainingFinished(Network network, Evaluation evaluation);
+}
@@ -0,0 +1,132 @@
+package network;
+
+import java.util.Arrays;
+
+/**
+ * Holds preallocated buffers for firing and teaching a network.
+ * A workspace may be reused across any number of calls, but must not be
+ * shared between threads.
+ */
+public class Workspace {
+   /** Layer sizes the buffers were allocated for. */
+   private final int[] layerSizes;
+
+   /** Output signals of each neuron layer. */
+   final double[][] activations;
+
+   /** Backpropagated errors of each neuron layer. */
+   final double[][] errors;
+
+   /** Weight gradients of each neuron layer (row-major). */
+   final double[][] weightGradients;
+
+   /** Bias gradients of each neuron layer. */
+   final double[][] biasGradients;
+
+   /** Number of test cases accumulated into the gradients. */
+   int batchCount;
+
+   /** Per-layer timings, or null if timing is disabled. */
+   LayerTimings timings;
+
+   /**
+    * Constructor.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    */
+   public Workspace(int[] layerSizes) {
+      this.layerSizes = layerSizes.clone();
+
+      int numLayers = layerSizes.length - 1;
+      activations = new double[numLayers][];
+      errors = new double[numLayers][];
+      weightGradients = new double[numLayers][];
+      biasGradients = new double[numLayers][];
+
+      // Size buffers using previous layer size.
+      for (int i = 0; i < numLayers; ++i) {
+         int size = layerSizes[i + 1];
+         activations[i] = new double[size];
+         errors[i] = new double[size];
+         weightGradients[i] = new double[size * layerSizes[i]];
+         biasGradients[i] = new double[size];
+      }
+   }
+
+   /**
+    * Determines whether this workspace fits a set of layer sizes.
+    * @param layerSizes number of neurons per layer (index 0 is input size)
+    * @return whether the buffers match the layer sizes
+    */
+   public boolean fits(int[] layerSizes) {
+      return Arrays.equals(this.layerSizes, layerSizes);
+   }
+
+   /**
+    * Clears accumulated gradients.
+    */
+   public void clearGradients() {
+      for (int i = 0; i < weightGradients.length; ++i) {
+         Arrays.fill(weightGradients[i], 0.0);
+         Arrays.fill(biasGradients[i], 0.0);
+      }
+      batchCount = 0;
+   }
+
+   /**
+    * Adds another workspace's accumulated gradients to this one's,
+    * then clears the other workspace.
+    * @param other workspace to merge in
+    */
+   public void mergeGradients(Workspace other) {
+      for (int i = 0; i < weightGradients.length; ++i) {
+         Kernels.axpy(1.0, other.weightGradients[i], 0,
+                      weightGradients[i], 0, weightGradients[i].length);
+         Kernels.axpy(1.0, other.biasGradients[i], 0,
+                      biasGradients[i], 0, biasGradients[i].length);
+      }
+      batchCount += other.batchCount;
+      other.clearGradients();
+   }
+
+   /**
+    * Enables or disables per-layer timing of learning in this workspace.
+    * Timing costs a few clock reads per layer per test case.
+    * @param enabled whether to time layers
+    */
+   public void setTimingEnabled(boolean enabled) {
+      timings = enabled ? new LayerTimings(activations.length) : null;
+   }
+
+   /**
+    * Getter for per-layer timings.
+    * @return timings, or null if timing is disabled
+    */
+   public LayerTimings getTimings() {
+      return timings;
+   }
+
+   /**
+    * Gets the number of test cases accumulated into the gradients.
+    * @return batch count
+    */
+   public int getBatchCount() {
+      return batchCount;
+   }
+
+   /**
+    * Gets the output signals of a neuron layer from the last pass.
+    * @param layerIndex layer index
+    * @return output signals
+    */
+   public double[] getActivations(int layerIndex) {
+      return activations[layerIndex];
+   }
+
+   /**
+    * Gets the output signals of the network from the last pass.
+    * @return output signals
+    */
+   public double[] getOutput() {
+      return activations[activations.length - 1];
+   }
+}
@@ -0,0 +1,166 @@
+package network;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the numeric kernels using the Vector API.
+ * Requires the jdk.incubator.vector module, so it is kept in its own
+ * source root and compiled separately; the rest of the network package
+ * builds without it, and Kernels falls back to the scalar implementation
+ * if this class is missing or cannot be loaded.
+ */
+class VectorKernels implements KernelImpl {
+   /** Preferred double vector shape. */
+   private static final VectorSpecies<Double> kDoubles =
+      DoubleVector.SPECIES_PREFERRED;
+
+   /** Preferred float vector shape. */
+   private static final VectorSpecies<Float> kFloats =
+      FloatVector.SPECIES_PREFERRED;
+
+   /** Preferred int vector shape, for integer accumulation. */
+   private static final VectorSpecies<Integer> kInts =
+      IntVector.SPECIES_PREFERRED;
+
+   /**
+    * Byte vector shape with as many lanes as the int shape, or the
+    * smallest byte shape if the int shape has fewer than eight lanes.
+    */
+   private static final VectorSpecies<Byte> kBytes = VectorSpecies.of(
+      byte.class, VectorShape.forBitSize(Math.max(
+         ByteVector.SPECIES_64.vectorBitSize(), kInts.length() * 8)));
+
+   /** Number of int vectors each byte vector widens into. */
+   private static final int kByteParts =
+      Math.max(1, kBytes.length() / kInts.length());
+
+   public double dot(double[] a, int aOffset, double[] b, int bOffset,
+                     int length) {
+      DoubleVector sum0 = DoubleVector.zero(kDoubles);
+      DoubleVector sum1 = DoubleVector.zero(kDoubles);
+      int step = kDoubles.length();
+      int i = 0;
+
+      // Two independent accumulators hide the add latency.
+      for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+         sum0 = sum0.add(DoubleVector.fromArray(kDoubles, a, aOffset + i)
+            .mul(DoubleVector.fromArray(kDoubles, b, bOffset + i)));
+         sum1 = sum1.add(DoubleVector.fromArray(kDoubles, a, aOffset + i + step)
+            .mul(DoubleVector.fromArray(kDoubles, b, bOffset + i + step)));
+      }
+      for (int bound = kDoubles.loopBound(length); i < bound; i += step) {
+         sum0 = sum0.add(DoubleVector.fromArray(kDoubles, a, aOffset + i)
+            .mul(DoubleVector.fromArray(kDoubles, b, bOffset + i)));
+      }
+      double sum = sum0.add(sum1).reduceLanes(VectorOperators.ADD);
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         sum += a[aOffset + i] * b[bOffset + i];
+      }
+      return sum;
+   }
+
+   public void axpy(double alpha, double[] x, int xOffset,
+                    double[] y, int yOffset, int length) {
+      DoubleVector scale = DoubleVector.broadcast(kDoubles, alpha);
+      int i = 0;
+      for (int bound = kDoubles.loopBound(length); i < bound;
+           i += kDoubles.length()) {
+         DoubleVector.fromArray(kDoubles, x, xOffset + i)
+            .mul(scale)
+            .add(DoubleVector.fromArray(kDoubles, y, yOffset + i))
+            .intoArray(y, yOffset + i);
+      }
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         y[yOffset + i] += alpha * x[xOffset + i];
+      }
+   }
+
+   public void scale(double alpha, double[] x, int xOffset,
+                     double[] y, int yOffset, int length) {
+      DoubleVector scale = DoubleVector.broadcast(kDoubles, alpha);
+      int i = 0;
+      for (int bound = kDoubles.loopBound(length); i < bound;
+           i += kDoubles.length()) {
+         DoubleVector.fromArray(kDoubles, x, xOffset + i)
+            .mul(scale)
+            .intoArray(y, yOffset + i);
+      }
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         y[yOffset + i] = alpha * x[xOffset + i];
+      }
+   }
+
+   public float dot(float[] a, int aOffset, float[] b, int bOffset,
+                    int length) {
+      FloatVector sum = FloatVector.zero(kFloats);
+      int i = 0;
+      for (int bound = kFloats.loopBound(length); i < bound;
+           i += kFloats.length()) {
+         sum = sum.add(FloatVector.fromArray(kFloats, a, aOffset + i)
+            .mul(FloatVector.fromArray(kFloats, b, bOffset + i)));
+      }
+      float result = sum.reduceLanes(VectorOperators.ADD);
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         result += a[aOffset + i] * b[bOffset + i];
+      }
+      return result;
+   }
+
+   public void axpy(float alpha, float[] x, int xOffset,
+                    float[] y, int yOffset, int length) {
+      FloatVector scale = FloatVector.broadcast(kFloats, alpha);
+      int i = 0;
+      for (int bound = kFloats.loopBound(length); i < bound;
+           i += kFloats.length()) {
+         FloatVector.fromArray(kFloats, x, xOffset + i)
+            .mul(scale)
+            .add(FloatVector.fromArray(kFloats, y, yOffset + i))
+            .intoArray(y, yOffset + i);
+      }
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         y[yOffset + i] += alpha * x[xOffset + i];
+      }
+   }
+
+   public int dot(byte[] a, int aOffset, byte[] b, int bOffset,
+                  int length) {
+      // Bytes are widened to int lanes, so products cannot overflow.
+      IntVector sum = IntVector.zero(kInts);
+      int i = 0;
+      for (int bound = kBytes.loopBound(length); i < bound;
+           i += kBytes.length()) {
+         ByteVector x = ByteVector.fromArray(kBytes, a, aOffset + i);
+         ByteVector y = ByteVector.fromArray(kBytes, b, bOffset + i);
+         for (int part = 0; part < kByteParts; ++part) {
+            IntVector xi = (IntVector)
+               x.convertShape(VectorOperators.B2I, kInts, part);
+            IntVector yi = (IntVector)
+               y.convertShape(VectorOperators.B2I, kInts, part);
+            sum = sum.add(xi.mul(yi));
+         }
+      }
+      int result = sum.reduceLanes(VectorOperators.ADD);
+
+      // Scalar tail.
+      for (; i < length; ++i) {
+         result += a[aOffset + i] * b[bOffset + i];
+      }
+      return result;
+   }
+}
@@ -1,4 +1,5 @@
 javac *.java network/*.java
-java Main
+javac --add-modules jdk.incubator.vector -cp . -d . simd/network/*.java
+java --add-modules jdk.incubator.vector Main
 rm *.class
 rm network/*.class